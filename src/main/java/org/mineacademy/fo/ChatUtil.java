@@ -77,50 +77,237 @@ public final class ChatUtil {
 		if (message == null || message.equals(""))
 			return "";
 
-		int messagePxSize = 0;
-		boolean previousCode = false;
-		boolean isBold = false;
+		final int halvedMessageSize = getWidth(message) / 2;
+		final int toCompensate = centerPx - halvedMessageSize;
+		final int spaceLength = DefaultFontInfo.getLength(space, false);
+		final String coloredSpace = spaceColor.toString() + space;
+
+		final StringBuilder builder = new StringBuilder();
+
+		for (int compensated = 0; compensated < toCompensate; compensated += spaceLength)
+			builder.append(coloredSpace);
+
+		final String padding = builder.toString();
+
+		return padding + " " + message + " " + padding;
+	}
+
+	// ------------------------------------------------------------------------------------------------------------
+	// Text layout
+	// ------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Returns how many pixels the message takes in the chat with the default font,
+	 * ignoring & and {@link ChatColor#COLOR_CHAR} colors and counting bold letters wider
+	 *
+	 * @param message
+	 * @return
+	 */
+	public static int getWidth(String message) {
+		int width = 0;
+		boolean bold = false;
 
-		for (final char c : message.toCharArray())
-			if (c == '&') {
-				previousCode = true;
+		for (int i = 0; i < message.length(); i++) {
+			final char c = message.charAt(i);
+
+			if (isCodeAt(message, i)) {
+				bold = updateBold(bold, message.charAt(++i));
 
 				continue;
+			}
+
+			width += DefaultFontInfo.getLength(c, bold);
+		}
+
+		return width;
+	}
+
+	/**
+	 * Appends spaces to the message until it is at least the given amount of pixels wide,
+	 * useful for aligning columns
+	 *
+	 * @param message
+	 * @param widthPx
+	 * @return
+	 */
+	public static String pad(String message, int widthPx) {
+		final int spaceLength = DefaultFontInfo.getLength(' ', false);
+		final StringBuilder builder = new StringBuilder(message);
+
+		for (int width = getWidth(message); width < widthPx; width += spaceLength)
+			builder.append(' ');
+
+		return builder.toString();
+	}
+
+	/**
+	 * Cuts the message so that it is at most the given amount of pixels wide,
+	 * colors before the cut are kept
+	 *
+	 * @param message
+	 * @param widthPx
+	 * @return
+	 */
+	public static String truncate(String message, int widthPx) {
+		int width = 0;
+		boolean bold = false;
+
+		for (int i = 0; i < message.length(); i++) {
+			if (isCodeAt(message, i)) {
+				bold = updateBold(bold, message.charAt(++i));
+
+				continue;
+			}
+
+			width += DefaultFontInfo.getLength(message.charAt(i), bold);
+
+			if (width > widthPx)
+				return message.substring(0, i);
+		}
+
+		return message;
+	}
+
+	/**
+	 * Splits the message into lines at most the given amount of pixels wide, breaking
+	 * at spaces where possible and at new lines. Colors continue on the next line.
+	 *
+	 * @param message
+	 * @param widthPx
+	 * @return
+	 */
+	public static List<String> wrap(String message, int widthPx) {
+		final List<String> lines = new ArrayList<>();
+
+		StringBuilder line = new StringBuilder();
+		String formats = "";
+		int width = 0;
+		boolean bold = false;
+		boolean hasText = false;
 
-			} else if (previousCode == true) {
-				previousCode = false;
+		// Where the line can be broken, the last space
+		int lastSpace = -1;
+		String formatsAtSpace = "";
 
-				if (c == 'l' || c == 'L') {
-					isBold = true;
+		for (int i = 0; i < message.length(); i++) {
+			final char c = message.charAt(i);
 
-					continue;
+			if (isCodeAt(message, i)) {
+				final char code = Character.toLowerCase(message.charAt(++i));
 
+				bold = updateBold(bold, code);
+				formats = isColor(code) ? message.substring(i - 1, i + 1) : formats + message.substring(i - 1, i + 1);
+				line.append(c).append(message.charAt(i));
+
+				continue;
+			}
+
+			if (c == '\n') {
+				lines.add(line.toString());
+
+				line = new StringBuilder(formats);
+				width = 0;
+				hasText = false;
+				lastSpace = -1;
+
+				continue;
+			}
+
+			final int charWidth = DefaultFontInfo.getLength(c, bold);
+
+			if (hasText && width + charWidth > widthPx && c != ' ') {
+
+				// Break at the last space and move the rest to the next line, leaving out lines with only spaces or colors
+				if (lastSpace != -1) {
+					final String head = line.substring(0, lastSpace);
+					final String rest = formatsAtSpace + line.substring(lastSpace + 1);
+
+					if (!isBlank(head))
+						lines.add(head);
+
+					line = new StringBuilder(rest);
+					width = getWidth(rest);
+					hasText = width > 0;
+					lastSpace = -1;
 				}
 
-				isBold = false;
+				// Still too wide, such as a word longer than the line, break it where the line is full
+				if (hasText && width + charWidth > widthPx) {
+					if (width > widthPx) {
+						final List<String> restLines = wrap(line.toString(), widthPx);
 
-			} else {
-				final DefaultFontInfo defaultFont = DefaultFontInfo.getDefaultFontInfo(c);
+						lines.addAll(restLines.subList(0, restLines.size() - 1));
 
-				messagePxSize += isBold ? defaultFont.getBoldLength() : defaultFont.getLength();
-				messagePxSize++;
+						line = new StringBuilder(restLines.get(restLines.size() - 1));
+						width = getWidth(line.toString());
+					}
+
+					if (width + charWidth > widthPx) {
+						lines.add(line.toString());
+
+						line = new StringBuilder(formats);
+						width = 0;
+						hasText = false;
+					}
+				}
 			}
 
-		final StringBuilder builder = new StringBuilder();
+			if (c == ' ') {
+				lastSpace = line.length();
+				formatsAtSpace = formats;
+			}
 
-		final int halvedMessageSize = messagePxSize / 2;
-		final int toCompensate = centerPx - halvedMessageSize;
-		final int spaceLength = DefaultFontInfo.getDefaultFontInfo(space).getLength() + 1;
+			line.append(c);
+			width += charWidth;
+			hasText = true;
+		}
 
-		int compensated = 0;
+		lines.add(line.toString());
 
-		while (compensated < toCompensate) {
-			builder.append(spaceColor.toString() + space);
+		return lines;
+	}
+
+	/*
+	 * Return true if the message has nothing but spaces and color codes
+	 */
+	private static boolean isBlank(String message) {
+		for (int i = 0; i < message.length(); i++) {
+			if (isCodeAt(message, i)) {
+				i++;
+
+				continue;
+			}
 
-			compensated += spaceLength;
+			if (!Character.isWhitespace(message.charAt(i)))
+				return false;
 		}
 
-		return builder.toString() + " " + message + " " + builder.toString();
+		return true;
+	}
+
+	/*
+	 * Return true if there is a color or formatting code at the index, & or the section sign followed by a code
+	 */
+	private static boolean isCodeAt(String message, int index) {
+		final char c = message.charAt(index);
+
+		return (c == '&' || c == ChatColor.COLOR_CHAR) && index + 1 < message.length() && ChatColor.getByChar(message.charAt(index + 1)) != null;
+	}
+
+	/*
+	 * Return if the text is bold after the given code, colors and reset end bold text
+	 */
+	private static boolean updateBold(boolean bold, char code) {
+		code = Character.toLowerCase(code);
+
+		return code == 'l' || bold && !isColor(code);
+	}
+
+	/*
+	 * Return true if the code is a color or reset, ending formatting
+	 */
+	private static boolean isColor(char code) {
+		return code >= '0' && code <= '9' || code >= 'a' && code <= 'f' || code == 'r';
 	}
 
 	/**
@@ -503,10 +690,38 @@ enum DefaultFontInfo {
 	}
 
 	public static DefaultFontInfo getDefaultFontInfo(char c) {
-		for (final DefaultFontInfo dFI : DefaultFontInfo.values())
-			if (dFI.getCharacter() == c)
-				return dFI;
+		final DefaultFontInfo info = c < byCharacter.length ? byCharacter[c] : null;
+
+		return info != null ? info : DefaultFontInfo.DEFAULT;
+	}
+
+	/**
+	 * Return the width of the character in pixels including the pixel between characters
+	 *
+	 * @param c
+	 * @param bold
+	 * @return
+	 */
+	public static int getLength(char c, boolean bold) {
+		return c < widths.length ? widths[c] + (bold && c != ' ' ? 1 : 0) : DEFAULT.getLength() + (bold ? 2 : 1);
+	}
+
+	/**
+	 * Fonts by their character, indexed by the character
+	 */
+	private static final DefaultFontInfo[] byCharacter = new DefaultFontInfo[128];
+
+	/**
+	 * Widths including the pixel between characters, indexed by the character
+	 */
+	private static final int[] widths = new int[128];
+
+	static {
+		for (final DefaultFontInfo info : values())
+			if (info != DEFAULT && byCharacter[info.character] == null)
+				byCharacter[info.character] = info;
 
-		return DefaultFontInfo.DEFAULT;
+		for (char c = 0; c < widths.length; c++)
+			widths[c] = getDefaultFontInfo(c).getLength() + 1;
 	}
 }
@@ -12,6 +12,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -55,6 +57,8 @@ import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import net.md_5.bungee.api.chat.BaseComponent;
 import net.md_5.bungee.api.chat.TextComponent;
 
 /**
@@ -73,6 +77,11 @@ public final class Common {
 	 */
 	private static final Pattern COLOR_REGEX = Pattern.compile("(?i)(&|" + ChatColor.COLOR_CHAR + ")([0-9A-F])");
 
+	/**
+	 * Pattern used to remove colors and formatting with & or {@link ChatColor#COLOR_CHAR}
+	 */
+	private static final Pattern STRIP_COLOR_REGEX = Pattern.compile("(" + ChatColor.COLOR_CHAR + "|&)([0-9a-fk-or])");
+
 	/**
 	 * We use this to send messages with colors to yor console
 	 */
@@ -91,6 +100,31 @@ public final class Common {
 	 */
 	private static final Map<String, Long> TIMED_LOG_CACHE = new HashMap<>();
 
+	/**
+	 * How many colorized messages we cache at most
+	 */
+	private static final int COLORIZE_CACHE_SIZE = 2_000;
+
+	/**
+	 * How long messages can be at most to be cached when colorizing
+	 */
+	private static final int COLORIZE_CACHE_MAX_LENGTH = 256;
+
+	/**
+	 * Messages and their colorized version, see {@link #colorize(String)}
+	 */
+	private static final Map<String, String> COLORIZE_CACHE = new ConcurrentHashMap<>();
+
+	/**
+	 * How many compiled patterns we cache at most
+	 */
+	private static final int PATTERN_CACHE_SIZE = 1_000;
+
+	/**
+	 * Compiled patterns by their flags and regex, see {@link #compilePattern(String, int)}
+	 */
+	private static final Map<String, Pattern> PATTERN_CACHE = new ConcurrentHashMap<>();
+
 	// ------------------------------------------------------------------------------------------------------------
 	// Tell prefix
 	// ------------------------------------------------------------------------------------------------------------
@@ -195,8 +229,7 @@ public final class Common {
 	 */
 	public static void broadcast(String message, boolean log) {
 		if (message != null && !message.equals("none")) {
-			for (final Player online : Remain.getOnlinePlayers())
-				tellJson(online, message);
+			tellJson(Remain.getOnlinePlayers(), message);
 
 			if (log)
 				log(message);
@@ -212,9 +245,13 @@ public final class Common {
 	 */
 	public static void broadcastWithPerm(String permission, String message, boolean log) {
 		if (message != null && !message.equals("none")) {
+			final List<Player> recipients = new ArrayList<>();
+
 			for (final Player online : Remain.getOnlinePlayers())
 				if (PlayerUtil.hasPerm(online, permission))
-					tellJson(online, message);
+					recipients.add(online);
+
+			tellJson(recipients, message);
 
 			if (log)
 				log(message);
@@ -246,8 +283,9 @@ public final class Common {
 	 * @param messages
 	 */
 	public static void broadcastTo(Iterable<? extends CommandSender> recipients, String... messages) {
-		for (final CommandSender sender : recipients)
-			tell(sender, messages);
+		for (final String message : messages)
+			if (message != null && !"none".equals(message))
+				tellJson(recipients, message);
 	}
 
 	// ------------------------------------------------------------------------------------------------------------
@@ -410,13 +448,53 @@ public final class Common {
 		if (message.isEmpty() || "none".equals(message))
 			return;
 
+		renderJson(message, resolveSenderName(sender)).send(sender);
+	}
+
+	/**
+	 * Tells all recipients the message the same way as {@link #tellJson(CommandSender, String)}
+	 *
+	 * The message is only colorized and parsed once for all recipients, or once per different
+	 * {player} variable if the message contains it, instead of once for each recipient.
+	 *
+	 * @param recipients
+	 * @param message
+	 */
+	public static void tellJson(Iterable<? extends CommandSender> recipients, String message) {
+		if (message.isEmpty() || "none".equals(message))
+			return;
+
+		final boolean hasPlayer = message.contains("{player}");
+		final Map<String, RenderedMessage> rendered = new HashMap<>();
+
+		for (final CommandSender recipient : recipients) {
+			final String playerName = resolveSenderName(recipient);
+			final String key = hasPlayer ? playerName : "";
+			RenderedMessage renderedMessage = rendered.get(key);
+
+			if (renderedMessage == null) {
+				renderedMessage = renderJson(message, playerName);
+
+				rendered.put(key, renderedMessage);
+			}
+
+			renderedMessage.send(recipient);
+		}
+	}
+
+	/*
+	 * Replace variables, colorize and parse the message for the given {player} variable,
+	 * adding the tell prefix to non-json messages
+	 */
+	private static RenderedMessage renderJson(String message, String playerName) {
+
 		// Has prefix already? This is replaced when colorizing
 		final boolean hasPrefix = message.contains("{prefix}");
 
 		// Add colors and replace player
 		message = Replacer.of(message)
 				.find("player", "plugin_name", "plugin.name", "plugin_version", "plugin.version")
-				.replace(resolveSenderName(sender), SimplePlugin.getNamed(), SimplePlugin.getNamed(), SimplePlugin.getVersion(), SimplePlugin.getVersion()).getReplacedMessageJoined();
+				.replace(playerName, SimplePlugin.getNamed(), SimplePlugin.getNamed(), SimplePlugin.getVersion(), SimplePlugin.getVersion()).getReplacedMessageJoined();
 		message = colorize(message);
 
 		// Send [JSON] prefixed messages as json component
@@ -426,19 +504,26 @@ public final class Common {
 			if (stripped.startsWith(" "))
 				stripped = stripped.substring(1);
 
-			if (!stripped.isEmpty())
-				Remain.sendJson(sender, stripped);
+			if (stripped.isEmpty())
+				return RenderedMessage.EMPTY;
 
-		} else
-			for (final String part : splitNewline(message)) {
-				final String toSend = (ADD_TELL_PREFIX && !hasPrefix ? removeSurroundingSpaces(tellPrefix) + " " : "") + part;
+			try {
+				return new RenderedMessage(Remain.toComponent(stripped), null);
 
-				if (SEND_TELL_TO_CONVERSING && sender instanceof Conversable && ((Conversable) sender).isConversing())
-					((Conversable) sender).sendRawMessage(toSend);
+			} catch (final RuntimeException ex) {
+				error(ex, "Malformed JSON when sending message with JSON: " + stripped);
 
-				else
-					sender.sendMessage(toSend);
+				return RenderedMessage.EMPTY;
 			}
+		}
+
+		final String[] parts = splitNewline(message);
+		final String prefix = ADD_TELL_PREFIX && !hasPrefix ? removeSurroundingSpaces(tellPrefix) + " " : "";
+
+		for (int i = 0; i < parts.length; i++)
+			parts[i] = prefix + parts[i];
+
+		return new RenderedMessage(null, parts);
 	}
 
 	/**
@@ -501,15 +586,99 @@ public final class Common {
 	 *
 	 * Also replaces {prefix} with {@link #getTellPrefix()} and {server} with {@link SimplePlugin#getServerPrefix()}
 	 *
+	 * Short messages without these variables, such as those from settings, are cached
+	 * so that colorizing them again is a map lookup.
+	 *
 	 * @param message the message to replace color codes with '&'
 	 * @return the colored message
 	 */
 	public static String colorize(String message) {
-		return message == null || message.isEmpty() ? ""
-				: ChatColor.translateAlternateColorCodes('&', message
-						.replace("{prefix}", message.startsWith(tellPrefix) ? "" : removeSurroundingSpaces(tellPrefix.trim()))
-						.replace("{server}", SimpleLocalization.SERVER_PREFIX)
-						.replace("{plugin.name}", SimplePlugin.getNamed().toLowerCase()));
+		if (message == null || message.isEmpty())
+			return "";
+
+		// Nothing to replace
+		if (message.indexOf('&') == -1 && message.indexOf('{') == -1)
+			return message;
+
+		final String cached = COLORIZE_CACHE.get(message);
+
+		if (cached != null)
+			return cached;
+
+		final StringBuilder builder = new StringBuilder(message.length() + 16);
+		final boolean hasVariables = colorize0(message, builder, true);
+		final String colorized = builder.toString();
+
+		// Variables may change, such as the prefix on reload, so only cache messages without them
+		if (!hasVariables && message.length() <= COLORIZE_CACHE_MAX_LENGTH) {
+
+			// Colorizing again is cheap, so we simply start over when full instead of tracking the oldest
+			if (COLORIZE_CACHE.size() >= COLORIZE_CACHE_SIZE)
+				COLORIZE_CACHE.clear();
+
+			COLORIZE_CACHE.put(message, colorized);
+		}
+
+		return colorized;
+	}
+
+	/*
+	 * Translate & colors and optionally replace {prefix}, {server} and {plugin.name}
+	 * in one pass over the message, the same as ChatColor#translateAlternateColorCodes.
+	 * Returns true if any variable was replaced.
+	 */
+	private static boolean colorize0(String message, StringBuilder builder, boolean replaceVariables) {
+		final int length = message.length();
+		boolean replaced = false;
+
+		for (int i = 0; i < length; i++) {
+			final char c = message.charAt(i);
+
+			if (c == '&' && i + 1 < length && isColorCode(message.charAt(i + 1))) {
+				builder.append(ChatColor.COLOR_CHAR).append(Character.toLowerCase(message.charAt(i + 1)));
+				i++;
+
+				continue;
+			}
+
+			if (c == '{' && replaceVariables) {
+				String value = null;
+				int variableLength = 0;
+
+				if (message.startsWith("{prefix}", i)) {
+					value = message.startsWith(tellPrefix) ? "" : removeSurroundingSpaces(tellPrefix.trim());
+					variableLength = 8;
+
+				} else if (message.startsWith("{server}", i)) {
+					value = SimpleLocalization.SERVER_PREFIX;
+					variableLength = 8;
+
+				} else if (message.startsWith("{plugin.name}", i)) {
+					value = SimplePlugin.getNamed().toLowerCase();
+					variableLength = 13;
+				}
+
+				if (value != null) {
+					colorize0(value, builder, false);
+
+					replaced = true;
+					i += variableLength - 1;
+
+					continue;
+				}
+			}
+
+			builder.append(c);
+		}
+
+		return replaced;
+	}
+
+	/*
+	 * Return true if the character is a valid color or formatting code after &
+	 */
+	private static boolean isColorCode(char c) {
+		return c >= '0' && c <= '9' || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F' || c >= 'k' && c <= 'o' || c >= 'K' && c <= 'O' || c == 'r' || c == 'R';
 	}
 
 	// Remove first and last spaces from the given message
@@ -552,7 +721,7 @@ public final class Common {
 	 * @return
 	 */
 	public static String stripColors(String message) {
-		return message == null ? "" : message.replaceAll("(" + ChatColor.COLOR_CHAR + "|&)([0-9a-fk-or])", "");
+		return message == null ? "" : STRIP_COLOR_REGEX.matcher(message).replaceAll("");
 	}
 
 	/**
@@ -1038,7 +1207,9 @@ public final class Common {
 				continue;
 			}
 
-			message = Replacer.of(message).find("plugin_name", "plugin.name", "plugin_version", "plugin.version").replace(SimplePlugin.getNamed(), SimplePlugin.getNamed(), SimplePlugin.getVersion(), SimplePlugin.getVersion()).getReplacedMessageJoined();
+			final String version = SimplePlugin.hasInstance() ? SimplePlugin.getVersion() : "";
+
+			message = Replacer.of(message).find("plugin_name", "plugin.name", "plugin_version", "plugin.version").replace(SimplePlugin.getNamed(), SimplePlugin.getNamed(), version, version).getReplacedMessageJoined();
 			message = colorize(message);
 
 			if (message.startsWith("[JSON]")) {
@@ -1260,12 +1431,29 @@ public final class Common {
 	 */
 	public static Pattern compilePattern(String regex) {
 		final SimplePlugin instance = SimplePlugin.getInstance();
-		Pattern pattern = null;
 
-		regex = SimplePlugin.getInstance().regexStripColors() ? stripColors(regex) : regex;
+		regex = instance.regexStripColors() ? stripColors(regex) : regex;
+
+		return compilePattern(regex, instance.regexCaseInsensitive() ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : Pattern.CASE_INSENSITIVE);
+	}
+
+	/**
+	 * Compiles a pattern from the given regex with the given flags, or returns
+	 * the same pattern compiled earlier
+	 *
+	 * @param regex
+	 * @param flags see {@link Pattern#compile(String, int)}
+	 * @return the pattern, or null if the regex is malformed
+	 */
+	public static Pattern compilePattern(String regex, int flags) {
+		final String key = flags + ":" + regex;
+		Pattern pattern = PATTERN_CACHE.get(key);
+
+		if (pattern != null)
+			return pattern;
 
 		try {
-			pattern = instance.regexCaseInsensitive() ? Pattern.compile(regex, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE) : Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
+			pattern = Pattern.compile(regex, flags);
 
 		} catch (final PatternSyntaxException ex) {
 			throwError(ex, "Malformed regex: \'" + regex + "\'", "Use online services (like &fregex101.com&f) for fixing errors");
@@ -1273,6 +1461,12 @@ public final class Common {
 			return null;
 		}
 
+		// Clear instead of removing the oldest, rules rarely have this many patterns
+		if (PATTERN_CACHE.size() >= PATTERN_CACHE_SIZE)
+			PATTERN_CACHE.clear();
+
+		PATTERN_CACHE.put(key, pattern);
+
 		return pattern;
 	}
 
@@ -2182,6 +2376,11 @@ public final class Common {
  */
 final class TimedCharSequence implements CharSequence {
 
+	/**
+	 * How many characters are read between checking the time
+	 */
+	private static final int CHECK_INTERVAL = 1024;
+
 	/**
 	 * The timed message
 	 */
@@ -2192,28 +2391,53 @@ final class TimedCharSequence implements CharSequence {
 	 */
 	private final int timeoutLimit;
 
+	/**
+	 * The {@link System#nanoTime()} after which reading throws an error, unused without a timeout
+	 */
+	private final long deadline;
+
+	/**
+	 * Characters read until the time is checked next
+	 */
+	private int untilCheck = CHECK_INTERVAL;
+
 	/**
 	 * Create a new timed message for the given message with a timeout in millis
+	 * counted from now, or no timeout if it is 0 or less
 	 *
 	 * @param message
 	 * @param timeoutLimit
 	 */
 	public TimedCharSequence(CharSequence message, Integer timeoutLimit) {
+		this(message, timeoutLimit, timeoutLimit != null && timeoutLimit > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutLimit) : 0);
+	}
+
+	/*
+	 * Create a new timed message sharing the deadline of another
+	 */
+	private TimedCharSequence(CharSequence message, Integer timeoutLimit, long deadline) {
 		Valid.checkNotNull(message, "msg = null");
 		Valid.checkNotNull(timeoutLimit, "timeout = null");
 
 		this.message = message;
 		this.timeoutLimit = timeoutLimit;
+		this.deadline = deadline;
 	}
 
 	/**
 	 * Gets a character at the given index, or throws an error if
 	 * this is called too late after the constructor, see {@link #timeoutLimit}
+	 *
+	 * The time is only checked every {@link #CHECK_INTERVAL} characters
 	 */
 	@Override
 	public char charAt(int index) {
-		if (System.currentTimeMillis() > System.currentTimeMillis() + timeoutLimit)
-			throw new RegexTimeoutException(message, timeoutLimit);
+		if (--untilCheck <= 0) {
+			untilCheck = CHECK_INTERVAL;
+
+			if (timeoutLimit > 0 && System.nanoTime() - deadline > 0)
+				throw new RegexTimeoutException(message, timeoutLimit);
+		}
 
 		return message.charAt(index);
 	}
@@ -2225,11 +2449,56 @@ final class TimedCharSequence implements CharSequence {
 
 	@Override
 	public CharSequence subSequence(int start, int end) {
-		return new TimedCharSequence(message.subSequence(start, end), timeoutLimit);
+		return new TimedCharSequence(message.subSequence(start, end), timeoutLimit, deadline);
 	}
 
 	@Override
 	public String toString() {
 		return message.toString();
 	}
-}
\ No newline at end of file
+}
+
+/**
+ * A message ready to be sent, rendered once by {@link Common#tellJson(Iterable, String)}
+ * and sent as it is to each recipient
+ */
+@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+final class RenderedMessage {
+
+	/**
+	 * A message with nothing to send
+	 */
+	static final RenderedMessage EMPTY = new RenderedMessage(null, new String[0]);
+
+	/**
+	 * The parsed [JSON] message, null if this is a plain message
+	 */
+	private final BaseComponent[] components;
+
+	/**
+	 * The lines of a plain message
+	 */
+	private final String[] lines;
+
+	/**
+	 * Send the message to the recipient, conversing players get plain lines
+	 * as raw messages if {@link Common#SEND_TELL_TO_CONVERSING} is true
+	 *
+	 * @param recipient
+	 */
+	void send(CommandSender recipient) {
+		if (components != null) {
+			Remain.sendComponent(recipient, components);
+
+			return;
+		}
+
+		final boolean conversing = Common.SEND_TELL_TO_CONVERSING && recipient instanceof Conversable && ((Conversable) recipient).isConversing();
+
+		for (final String line : lines)
+			if (conversing)
+				((Conversable) recipient).sendRawMessage(line);
+			else
+				recipient.sendMessage(line);
+	}
+}
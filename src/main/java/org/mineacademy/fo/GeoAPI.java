@@ -1,15 +1,36 @@
 package org.mineacademy.fo;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.net.Inet4Address;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.NoRouteToHostException;
 import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
-import org.mineacademy.fo.collection.StrictMap;
+import org.bukkit.Bukkit;
+import org.mineacademy.fo.collection.expiringmap.ExpiringMap;
+import org.mineacademy.fo.collection.expiringmap.NamedThreadFactory;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 
 import lombok.AccessLevel;
 import lombok.Getter;
@@ -18,63 +39,424 @@ import lombok.RequiredArgsConstructor;
 
 /**
  * Utility class for resolving geographical information about players.
+ *
+ * Addresses are looked up in the local database if one was loaded using
+ * {@link #loadDatabase(File)}, otherwise at ip-api.com on a background thread.
+ * Responses from ip-api.com are cached for {@link #CACHE_EXPIRATION_HOURS} hours.
+ *
+ * Players are looked up when they log in, so that their response is usually
+ * ready by the time it is needed, see {@link #PREFETCH_ON_LOGIN}.
  */
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public final class GeoAPI {
 
 	/**
-	 * The cached responses per IP addresses
+	 * Should we look up players when they are logging in? Turn off to
+	 * only call ip-api.com when a response is actually needed, since it
+	 * allows 45 requests per minute.
+	 */
+	public static boolean PREFETCH_ON_LOGIN = true;
+
+	/**
+	 * How many hours we cache responses from ip-api.com for
+	 */
+	private static final int CACHE_EXPIRATION_HOURS = 6;
+
+	/**
+	 * The response for unknown addresses
+	 */
+	private static final GeoResponse EMPTY_RESPONSE = new GeoResponse("", "", "", "");
+
+	/**
+	 * The response for local addresses
 	 */
-	private static final StrictMap<String, GeoResponse> cache = new StrictMap<>();
+	private static final GeoResponse LOCAL_RESPONSE = new GeoResponse("local", "-", "local", "-");
+
+	/**
+	 * The responses per IP address, including lookups that are still running
+	 */
+	private static final Map<String, CompletableFuture<GeoResponse>> cache = ExpiringMap.builder()
+			.maxSize(5_000)
+			.expiration(CACHE_EXPIRATION_HOURS, TimeUnit.HOURS)
+			.build();
+
+	/**
+	 * Runs lookups at ip-api.com
+	 */
+	private static final ExecutorService executor = newExecutor();
+
+	/**
+	 * The local database, null if not loaded
+	 */
+	private static volatile IpDatabase database;
 
 	/**
 	 * Returns a {@link GeoResponse} with geographic data for the given IP address
 	 *
+	 * If the response is not known yet, this waits for ip-api.com, but on the main thread
+	 * it returns an empty response instead and the address is looked up in the background.
+	 * Use {@link #getCountryAsync(InetSocketAddress)} to be notified when the response is ready.
+	 *
 	 * @param ip
 	 * @return
 	 */
 	public static GeoResponse getCountry(InetSocketAddress ip) {
-		GeoResponse response = new GeoResponse("", "", "", "");
+		final CompletableFuture<GeoResponse> future = getCountryAsync(ip);
+
+		if (future.isDone() || !Bukkit.isPrimaryThread())
+			return future.join();
+
+		return EMPTY_RESPONSE;
+	}
+
+	/**
+	 * Returns a future completed with geographic data for the given IP address,
+	 * completed right away if it is known or found in the local database
+	 *
+	 * The future is never completed exceptionally, failed lookups give an empty response.
+	 *
+	 * @param ip
+	 * @return
+	 */
+	public static CompletableFuture<GeoResponse> getCountryAsync(InetSocketAddress ip) {
+		if (ip == null || ip.getAddress() == null)
+			return CompletableFuture.completedFuture(EMPTY_RESPONSE);
+
+		return getCountryAsync(ip.getAddress());
+	}
+
+	/**
+	 * Returns a future completed with geographic data for the given IP address,
+	 * completed right away if it is known or found in the local database
+	 *
+	 * The future is never completed exceptionally, failed lookups give an empty response.
+	 *
+	 * @param address
+	 * @return
+	 */
+	public static CompletableFuture<GeoResponse> getCountryAsync(InetAddress address) {
+		if (address == null)
+			return CompletableFuture.completedFuture(EMPTY_RESPONSE);
+
+		if (address.isLoopbackAddress() || address.isAnyLocalAddress() || address.isSiteLocalAddress())
+			return CompletableFuture.completedFuture(LOCAL_RESPONSE);
+
+		final IpDatabase database = GeoAPI.database;
+
+		if (database != null && address instanceof Inet4Address)
+			return CompletableFuture.completedFuture(database.find(toLong((Inet4Address) address)));
+
+		final String host = address.getHostAddress();
+		final CompletableFuture<GeoResponse> cached = cache.get(host);
+
+		if (cached != null)
+			return cached;
+
+		final CompletableFuture<GeoResponse> future = new CompletableFuture<>();
+		final CompletableFuture<GeoResponse> previous = cache.putIfAbsent(host, future);
 
-		if (ip == null)
-			return response;
+		if (previous != null)
+			return previous;
 
-		if (ip.getHostString().equals("127.0.0.1") || ip.getHostString().equals("0.0.0.0"))
-			return new GeoResponse("local", "-", "local", "-");
+		executor.execute(() -> {
+			final GeoResponse response = download(host);
 
-		if (cache.contains(ip.toString()))
-			return cache.get(ip.toString());
+			// Try again next time
+			if (response == null)
+				cache.remove(host, future);
 
+			future.complete(response != null ? response : EMPTY_RESPONSE);
+		});
+
+		return future;
+	}
+
+	/**
+	 * Start looking up the address in the background so that it is ready
+	 * when needed, called when players log in if {@link #PREFETCH_ON_LOGIN} is true
+	 *
+	 * @param address
+	 */
+	public static void prefetch(InetAddress address) {
+		if (PREFETCH_ON_LOGIN)
+			getCountryAsync(address);
+	}
+
+	/*
+	 * Download the response from ip-api.com, null if it failed
+	 */
+	private static GeoResponse download(String host) {
 		try {
-			final URL url = new URL("http://ip-api.com/json/" + ip.getHostName());
-			final URLConnection con = url.openConnection();
+			final URLConnection con = new URL("http://ip-api.com/json/" + host).openConnection();
 			con.setConnectTimeout(3000);
 			con.setReadTimeout(3000);
 
-			try (final BufferedReader r = new BufferedReader(new InputStreamReader(con.getInputStream()))) {
-				String page = "";
-				String input;
+			try (final BufferedReader r = new BufferedReader(new InputStreamReader(con.getInputStream(), StandardCharsets.UTF_8))) {
+				final JsonObject json = new JsonParser().parse(r).getAsJsonObject();
 
-				while ((input = r.readLine()) != null)
-					page += input;
+				if (!"success".equals(getJson(json, "status")))
+					return null;
 
-				response = new GeoResponse(getJson(page, "country"), getJson(page, "countryCode"), getJson(page, "regionName"), getJson(page, "isp"));
-				cache.put(ip.toString(), response);
+				return new GeoResponse(getJson(json, "country"), getJson(json, "countryCode"), getJson(json, "regionName"), getJson(json, "isp"));
 			}
 
 		} catch (final NoRouteToHostException ex) {
 			// Firewall or internet access denied
 
 		} catch (final SocketTimeoutException ex) { // hide
-		} catch (final IOException ex) {
+		} catch (final IOException | RuntimeException ex) {
 			ex.printStackTrace();
 		}
 
-		return response;
+		return null;
+	}
+
+	private static String getJson(JsonObject json, String element) {
+		final JsonElement value = json.get(element);
+
+		return value != null && value.isJsonPrimitive() ? value.getAsString() : "";
+	}
+
+	// ------------------------------------------------------------------------------------------------------------
+	// Local database
+	// ------------------------------------------------------------------------------------------------------------
+
+	/**
+	 * Loads a local database of IPv4 ranges, used instead of ip-api.com
+	 * for IPv4 addresses until {@link #unloadDatabase()} is called.
+	 *
+	 * The file is a CSV with one range per line:
+	 * start,end,country_code,country_name[,region_name[,isp]]
+	 *
+	 * Start and end are inclusive and either written as 1.2.3.4 or as a number.
+	 * Values with commas must be in "quotes". Empty lines, lines starting with #
+	 * and lines that cannot be read such as a header are skipped.
+	 *
+	 * Addresses not in any range get an empty response.
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	public static void loadDatabase(File file) throws IOException {
+		final IpDatabase loaded = IpDatabase.load(file);
+
+		database = loaded;
+
+		Common.log("Loaded " + loaded.size() + " IP ranges from " + file.getName());
+	}
+
+	/**
+	 * Stop using the local database, looking up addresses at ip-api.com again
+	 */
+	public static void unloadDatabase() {
+		database = null;
+	}
+
+	/**
+	 * Return if a local database is loaded
+	 *
+	 * @return
+	 */
+	public static boolean isDatabaseLoaded() {
+		return database != null;
+	}
+
+	/*
+	 * Return the IPv4 address as an unsigned number
+	 */
+	private static long toLong(Inet4Address address) {
+		final byte[] bytes = address.getAddress();
+
+		return (bytes[0] & 0xFFL) << 24 | (bytes[1] & 0xFFL) << 16 | (bytes[2] & 0xFFL) << 8 | bytes[3] & 0xFFL;
 	}
 
-	private static String getJson(String page, String element) {
-		return page.contains("\"" + element + "\":\"") ? page.split("\"" + element + "\":\"")[1].split("\",")[0] : "";
+	/*
+	 * Create the executor for ip-api.com lookups, its threads stop when idle
+	 */
+	private static ExecutorService newExecutor() {
+		final ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 2, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new NamedThreadFactory("GeoAPI-%d"));
+		executor.allowCoreThreadTimeOut(true);
+
+		return executor;
+	}
+
+	/**
+	 * IPv4 ranges sorted by their start, searched by binary search
+	 */
+	@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+	private static final class IpDatabase {
+
+		/**
+		 * The first address of each range, ascending
+		 */
+		private final long[] starts;
+
+		/**
+		 * The last address of each range
+		 */
+		private final long[] ends;
+
+		/**
+		 * The response of each range
+		 */
+		private final GeoResponse[] responses;
+
+		/*
+		 * Return the amount of ranges
+		 */
+		private int size() {
+			return starts.length;
+		}
+
+		/*
+		 * Return the response of the range containing the address
+		 */
+		private GeoResponse find(long address) {
+			int low = 0;
+			int high = starts.length - 1;
+			int found = -1;
+
+			// Find the last range starting at or before the address
+			while (low <= high) {
+				final int middle = (low + high) >>> 1;
+
+				if (starts[middle] <= address) {
+					found = middle;
+					low = middle + 1;
+
+				} else
+					high = middle - 1;
+			}
+
+			return found != -1 && address <= ends[found] ? responses[found] : EMPTY_RESPONSE;
+		}
+
+		/*
+		 * Read ranges from the file and sort them
+		 */
+		private static IpDatabase load(File file) throws IOException {
+			final List<long[]> ranges = new ArrayList<>();
+			final List<GeoResponse> responses = new ArrayList<>();
+			final Map<List<String>, GeoResponse> sharedResponses = new HashMap<>();
+
+			int skipped = 0;
+
+			try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+				String line;
+
+				while ((line = reader.readLine()) != null) {
+					if (line.isEmpty() || line.startsWith("#"))
+						continue;
+
+					final List<String> values = splitCsv(line);
+					final long start = values.size() >= 4 ? parseAddress(values.get(0)) : -1;
+					final long end = start != -1 ? parseAddress(values.get(1)) : -1;
+
+					if (end == -1 || end < start) {
+						skipped++;
+
+						continue;
+					}
+
+					final List<String> key = Arrays.asList(values.get(3), values.get(2), values.size() > 4 ? values.get(4) : "", values.size() > 5 ? values.get(5) : "");
+
+					ranges.add(new long[] { start, end });
+					responses.add(sharedResponses.computeIfAbsent(key, k -> new GeoResponse(k.get(0), k.get(1), k.get(2), k.get(3))));
+				}
+			}
+
+			if (skipped > 0)
+				Common.log("Skipped " + skipped + " line(s) in " + file.getName() + " that are not IP ranges");
+
+			// Sort by start, packing the start and the line index into one number
+			// with the sign bit flipped so that it sorts as unsigned
+			final long[] order = new long[ranges.size()];
+
+			for (int i = 0; i < order.length; i++)
+				order[i] = (ranges.get(i)[0] << 32 | i) ^ Long.MIN_VALUE;
+
+			Arrays.sort(order);
+
+			final long[] starts = new long[order.length];
+			final long[] ends = new long[order.length];
+			final GeoResponse[] sortedResponses = new GeoResponse[order.length];
+
+			for (int i = 0; i < order.length; i++) {
+				final int index = (int) (order[i] & 0xFFFFFFFFL);
+
+				starts[i] = ranges.get(index)[0];
+				ends[i] = ranges.get(index)[1];
+				sortedResponses[i] = responses.get(index);
+			}
+
+			return new IpDatabase(starts, ends, sortedResponses);
+		}
+
+		/*
+		 * Parse 1.2.3.4 or a number into an unsigned number, -1 if invalid
+		 */
+		private static long parseAddress(String value) {
+			try {
+				long address = 0;
+
+				if (value.indexOf('.') == -1)
+					address = Long.parseLong(value);
+
+				else {
+					final String[] parts = value.split("\\.");
+
+					if (parts.length != 4)
+						return -1;
+
+					for (final String part : parts) {
+						final int octet = Integer.parseInt(part);
+
+						if (octet < 0 || octet > 255)
+							return -1;
+
+						address = address << 8 | octet;
+					}
+				}
+
+				return address >= 0 && address <= 0xFFFFFFFFL ? address : -1;
+
+			} catch (final NumberFormatException ex) {
+				return -1;
+			}
+		}
+
+		/*
+		 * Split a CSV line by commas outside of quotes
+		 */
+		private static List<String> splitCsv(String line) {
+			final List<String> values = new ArrayList<>(6);
+			final StringBuilder value = new StringBuilder();
+			boolean quoted = false;
+
+			for (int i = 0; i < line.length(); i++) {
+				final char c = line.charAt(i);
+
+				if (c == '"') {
+					// Two quotes inside quotes are one quote
+					if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+						value.append('"');
+						i++;
+
+					} else
+						quoted = !quoted;
+
+				} else if (c == ',' && !quoted) {
+					values.add(value.toString().trim());
+					value.setLength(0);
+
+				} else
+					value.append(c);
+			}
+
+			values.add(value.toString().trim());
+
+			return values;
+		}
 	}
 
 	/**
@@ -1,12 +1,19 @@
 package org.mineacademy.fo;
 
 import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.NavigableMap;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
 
 /**
  * Utility class for mathematical operations.
@@ -34,6 +41,16 @@ public final class MathUtil {
 	 */
 	private final static DecimalFormat fiveDigitsFormat = new DecimalFormat("#.#####");
 
+	/**
+	 * How many compiled expressions we keep at most
+	 */
+	private final static int EXPRESSION_CACHE_SIZE = 1000;
+
+	/**
+	 * Compiled expressions by their text
+	 */
+	private final static Map<String, Expression> compiledExpressions = new ConcurrentHashMap<>();
+
 	/**
 	 * Holds all valid roman numbers
 	 */
@@ -308,116 +325,334 @@ public final class MathUtil {
 	/**
 	 * Evaluate the given expression, e.g. 5*(4-2) returns... let me check!
 	 *
+	 * The expression is compiled once and cached, see {@link #compile(String)}
+	 *
 	 * @param expression
 	 * @return
 	 */
 	public static double calculate(final String expression) {
-		class Parser {
-			int pos = -1, c;
+		return compile(expression).evaluate();
+	}
 
-			void eatChar() {
-				c = ++pos < expression.length() ? expression.charAt(pos) : -1;
-			}
+	/**
+	 * Compile the given expression so that it can be evaluated many times without
+	 * parsing it again, e.g. compile("base * 1.5 ^ level").evaluate(10, 3)
+	 *
+	 * Variables are names made of letters, digits and _ not starting with a digit.
+	 * Compiled expressions are cached, so calling this each time is cheap.
+	 *
+	 * @param expression
+	 * @return
+	 * @throws CalculatorException if the expression is invalid
+	 */
+	public static Expression compile(final String expression) {
+		Expression compiled = compiledExpressions.get(expression);
 
-			void eatSpace() {
-				while (Character.isWhitespace(c))
-					eatChar();
-			}
+		if (compiled == null) {
+			compiled = new ExpressionParser(expression).parse();
+
+			// Plugins evaluate a few expressions over and over, so starting over when full rarely costs a parse
+			if (compiledExpressions.size() >= EXPRESSION_CACHE_SIZE)
+				compiledExpressions.clear();
+
+			compiledExpressions.put(expression, compiled);
+		}
+
+		return compiled;
+	}
+
+	/**
+	 * Parses expressions into a tree of {@link Node}s
+	 */
+	private static final class ExpressionParser {
 
-			double parse() {
+		/**
+		 * The expression we parse
+		 */
+		private final String expression;
+
+		/**
+		 * Variable names in the order they first appear
+		 */
+		private final List<String> variables = new ArrayList<>();
+
+		/**
+		 * The current position and character, -1 at the end
+		 */
+		private int pos = -1, c;
+
+		private ExpressionParser(String expression) {
+			this.expression = expression;
+		}
+
+		private void eatChar() {
+			c = ++pos < expression.length() ? expression.charAt(pos) : -1;
+		}
+
+		private void eatSpace() {
+			while (Character.isWhitespace(c))
 				eatChar();
+		}
 
-				final double v = parseExpression();
+		private Expression parse() {
+			eatChar();
 
-				if (c != -1)
-					throw new CalculatorException("Unexpected: " + (char) c);
+			final Node root = parseExpression();
 
-				return v;
-			}
+			if (c != -1)
+				throw new CalculatorException("Unexpected: " + (char) c);
 
-			// Grammar:
-			// expression = term | expression `+` term | expression `-` term
-			// term = factor | term `*` factor | term `/` factor | term brackets
-			// factor = brackets | number | factor `^` factor
-			// brackets = `(` expression `)`
+			return new Expression(expression, root, variables.toArray(new String[variables.size()]));
+		}
 
-			double parseExpression() {
-				double v = parseTerm();
+		// Grammar:
+		// expression = term | expression `+` term | expression `-` term
+		// term = factor | term `*` factor | term `/` factor | term brackets
+		// factor = brackets | number | variable | factor `^` factor
+		// brackets = `(` expression `)`
 
-				for (;;) {
-					eatSpace();
+		private Node parseExpression() {
+			Node v = parseTerm();
 
-					if (c == '+') { // addition
-						eatChar();
-						v += parseTerm();
-					} else if (c == '-') { // subtraction
-						eatChar();
-						v -= parseTerm();
-					} else
-						return v;
+			for (;;) {
+				eatSpace();
+
+				if (c == '+') { // addition
+					eatChar();
+					v = binary(v, parseTerm(), '+');
+				} else if (c == '-') { // subtraction
+					eatChar();
+					v = binary(v, parseTerm(), '-');
+				} else
+					return v;
 
-				}
 			}
+		}
 
-			double parseTerm() {
-				double v = parseFactor();
+		private Node parseTerm() {
+			Node v = parseFactor();
 
-				for (;;) {
-					eatSpace();
+			for (;;) {
+				eatSpace();
 
-					if (c == '/') { // division
+				if (c == '/') { // division
+					eatChar();
+					v = binary(v, parseFactor(), '/');
+				} else if (c == '*' || c == '(') { // multiplication
+					if (c == '*')
 						eatChar();
-						v /= parseFactor();
-					} else if (c == '*' || c == '(') { // multiplication
-						if (c == '*')
-							eatChar();
-						v *= parseFactor();
-					} else
-						return v;
-				}
+					v = binary(v, parseFactor(), '*');
+				} else
+					return v;
 			}
+		}
+
+		private Node parseFactor() {
+			Node v;
+			boolean negate = false;
 
-			double parseFactor() {
-				double v;
-				boolean negate = false;
+			eatSpace();
 
+			if (c == '+' || c == '-') { // unary plus & minus
+				negate = c == '-';
+				eatChar();
 				eatSpace();
+			}
 
-				if (c == '+' || c == '-') { // unary plus & minus
-					negate = c == '-';
+			if (c == '(') { // brackets
+				eatChar();
+				v = parseExpression();
+				if (c == ')')
 					eatChar();
-					eatSpace();
-				}
+			} else if (c != -1 && Character.isJavaIdentifierStart(c) && c != '$') { // variables
+				final int start = pos;
 
-				if (c == '(') { // brackets
+				while (c != -1 && Character.isJavaIdentifierPart(c) && c != '$')
 					eatChar();
-					v = parseExpression();
-					if (c == ')')
-						eatChar();
-				} else { // numbers
-					final StringBuilder sb = new StringBuilder();
-
-					while (c >= '0' && c <= '9' || c == '.') {
-						sb.append((char) c);
-						eatChar();
-					}
 
-					if (sb.length() == 0)
-						throw new CalculatorException("Unexpected: " + (char) c);
+				final String name = expression.substring(start, pos);
+				int index = variables.indexOf(name);
 
-					v = Double.parseDouble(sb.toString());
+				if (index == -1) {
+					index = variables.size();
+					variables.add(name);
 				}
-				eatSpace();
-				if (c == '^') { // exponentiation
+
+				final int slot = index;
+				v = values -> values[slot];
+			} else { // numbers
+				final int start = pos;
+
+				while (c >= '0' && c <= '9' || c == '.')
 					eatChar();
-					v = Math.pow(v, parseFactor());
-				}
-				if (negate)
-					v = -v; // unary minus is applied after exponentiation; e.g. -3^2=-9
-				return v;
+
+				if (start == pos)
+					throw new CalculatorException("Unexpected: " + (char) c);
+
+				final double number = Double.parseDouble(expression.substring(start, pos));
+				v = constant(number);
+			}
+			eatSpace();
+			if (c == '^') { // exponentiation
+				eatChar();
+				v = binary(v, parseFactor(), '^');
+			}
+			if (negate) { // unary minus is applied after exponentiation; e.g. -3^2=-9
+				final Node negated = v;
+				v = negated instanceof Constant ? constant(-((Constant) negated).value) : values -> -negated.evaluate(values);
+			}
+			return v;
+		}
+
+		/*
+		 * Join two nodes by the operator, calculating it right away if both are numbers
+		 */
+		private static Node binary(Node left, Node right, char operator) {
+			final Node node;
+
+			switch (operator) {
+				case '+':
+					node = values -> left.evaluate(values) + right.evaluate(values);
+					break;
+				case '-':
+					node = values -> left.evaluate(values) - right.evaluate(values);
+					break;
+				case '*':
+					node = values -> left.evaluate(values) * right.evaluate(values);
+					break;
+				case '/':
+					node = values -> left.evaluate(values) / right.evaluate(values);
+					break;
+				case '^':
+					node = values -> Math.pow(left.evaluate(values), right.evaluate(values));
+					break;
+				default:
+					throw new CalculatorException("Unknown operator: " + operator);
 			}
+
+			return left instanceof Constant && right instanceof Constant ? constant(node.evaluate(null)) : node;
+		}
+
+		private static Node constant(double value) {
+			return new Constant(value);
+		}
+	}
+
+	/**
+	 * A part of a compiled expression
+	 */
+	@FunctionalInterface
+	private interface Node {
+
+		/**
+		 * Calculate the value of this part
+		 *
+		 * @param values the values of variables
+		 * @return
+		 */
+		double evaluate(double[] values);
+	}
+
+	/**
+	 * A number in a compiled expression
+	 */
+	@RequiredArgsConstructor
+	private static final class Constant implements Node {
+
+		private final double value;
+
+		@Override
+		public double evaluate(double[] values) {
+			return value;
+		}
+	}
+
+	/**
+	 * An expression compiled by {@link MathUtil#compile(String)}, immutable
+	 * and safe to evaluate from any thread
+	 */
+	public static final class Expression {
+
+		/**
+		 * Values given when evaluating expressions without variables
+		 */
+		private static final double[] NO_VALUES = new double[0];
+
+		/**
+		 * The expression this was compiled from
+		 */
+		private final String source;
+
+		/**
+		 * The root of the compiled tree
+		 */
+		private final Node root;
+
+		/**
+		 * Variable names in the order values are given to {@link #evaluate(double...)}
+		 */
+		private final String[] variables;
+
+		private Expression(String source, Node root, String[] variables) {
+			this.source = source;
+			this.root = root;
+			this.variables = variables;
+		}
+
+		/**
+		 * Return the variable names in the order they first appear in the expression,
+		 * this is the order values are given to {@link #evaluate(double...)}
+		 *
+		 * @return
+		 */
+		public List<String> getVariables() {
+			return Collections.unmodifiableList(Arrays.asList(variables));
+		}
+
+		/**
+		 * Return the index of the given variable in the values given to {@link #evaluate(double...)},
+		 * or -1 if the expression does not use it. Look indexes up once and reuse your array of values.
+		 *
+		 * @param variable
+		 * @return
+		 */
+		public int indexOf(String variable) {
+			for (int i = 0; i < variables.length; i++)
+				if (variables[i].equals(variable))
+					return i;
+
+			return -1;
+		}
+
+		/**
+		 * Calculate the expression that has no variables
+		 *
+		 * @return
+		 * @throws CalculatorException if the expression has variables
+		 */
+		public double evaluate() {
+			return evaluate(NO_VALUES);
+		}
+
+		/**
+		 * Calculate the expression with the given values of variables,
+		 * in the order of {@link #getVariables()}, see {@link #indexOf(String)}
+		 *
+		 * @param values
+		 * @return
+		 * @throws CalculatorException if not enough values were given
+		 */
+		public double evaluate(double... values) {
+			if (values.length < variables.length)
+				throw new CalculatorException("Missing value for variable '" + variables[values.length] + "' in " + source);
+
+			return root.evaluate(values);
+		}
+
+		@Override
+		public String toString() {
+			return source;
 		}
-		return new Parser().parse();
 	}
 
 	/**
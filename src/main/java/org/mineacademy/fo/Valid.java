@@ -332,14 +332,18 @@ public final class Valid {
 	/**
 	 * Returns true if any element in the given list equals (case ignored) to your given element
 	 *
+	 * To check the same list many times, use {@link org.mineacademy.fo.model.ListMatcher#contains(String)}
+	 *
 	 * @param element
 	 * @param list
 	 * @return
 	 */
 	public static boolean isInList(String element, Iterable<String> list) {
 		try {
+			final String normalized = normalizeEquals(element);
+
 			for (final String matched : list)
-				if (normalizeEquals(element).equals(normalizeEquals(matched)))
+				if (normalized.equals(normalizeEquals(matched)))
 					return true;
 
 		} catch (final ClassCastException ex) { // for example when YAML translates "yes" to "true" to boolean (!) (#wontfix)
@@ -351,14 +355,18 @@ public final class Valid {
 	/**
 	 * Returns true if any element in the given list starts with (case ignored) your given element
 	 *
+	 * To check the same list many times, use {@link org.mineacademy.fo.model.ListMatcher#startsWith(String)}
+	 *
 	 * @param element
 	 * @param list
 	 * @return
 	 */
 	public static boolean isInListStartsWith(String element, Iterable<String> list) {
 		try {
+			final String normalized = normalizeEquals(element);
+
 			for (final String matched : list)
-				if (normalizeEquals(element).startsWith(normalizeEquals(matched)))
+				if (normalized.startsWith(normalizeEquals(matched)))
 					return true;
 		} catch (final ClassCastException ex) { // for example when YAML translates "yes" to "true" to boolean (!) (#wontfix)
 		}
@@ -375,8 +383,10 @@ public final class Valid {
 	 */
 	public static boolean isInListContains(String element, Iterable<String> list) {
 		try {
+			final String normalized = normalizeEquals(element);
+
 			for (final String matched : list)
-				if (normalizeEquals(element).contains(normalizeEquals(matched)))
+				if (normalized.contains(normalizeEquals(matched)))
 					return true;
 
 		} catch (final ClassCastException ex) { // for example when YAML translates "yes" to "true" to boolean (!) (#wontfix)
@@ -388,7 +398,8 @@ public final class Valid {
 	/**
 	 * Returns true if any element in the given list matches your given element.
 	 *
-	 * A regular expression is compiled from that list element.
+	 * A regular expression is compiled from that list element, compiled patterns are cached.
+	 * To check the same list many times, use {@link org.mineacademy.fo.model.ListMatcher#matchesRegex(String)}
 	 *
 	 * @param element
 	 * @param list
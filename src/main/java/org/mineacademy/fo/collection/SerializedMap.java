@@ -634,6 +634,30 @@ public final class SerializedMap extends StrictCollection {
 		return gson.toJson(serialize());
 	}
 
+	/**
+	 * Converts this map into compact binary data, compressing it when over 1 KB
+	 *
+	 * @see #toBinary(int)
+	 * @return
+	 */
+	public byte[] toBinary() {
+		return toBinary(1024);
+	}
+
+	/**
+	 * Converts this map into compact binary data that is faster to create and
+	 * read than JSON, see {@link #fromBinary(byte[])}
+	 *
+	 * Values are stored with their type and length so numbers keep their
+	 * exact type when read back.
+	 *
+	 * @param compressionThreshold compress the data when larger than this amount of bytes, -1 to never compress
+	 * @return
+	 */
+	public byte[] toBinary(int compressionThreshold) {
+		return SerializedMapCodec.encode(serialize(), compressionThreshold);
+	}
+
 	@Override
 	public String toString() {
 		return serialize().toString();
@@ -700,4 +724,34 @@ public final class SerializedMap extends StrictCollection {
 
 		return serializedMap;
 	}
+
+	/**
+	 * Parses binary data created by {@link #toBinary()} into a serialized map
+	 *
+	 * Values are not deserialized right away, they are converted
+	 * when you call get() functions
+	 *
+	 * @param data
+	 * @return
+	 */
+	public static SerializedMap fromBinary(byte[] data) {
+		final SerializedMap serializedMap = new SerializedMap();
+		final Object decoded = SerializedMapCodec.decode(data);
+
+		Valid.checkBoolean(decoded instanceof Map, "Binary data does not contain a map but " + decoded);
+		serializedMap.map.putAll((Map<String, Object>) decoded);
+
+		return serializedMap;
+	}
+
+	/**
+	 * Return true if the given data was created by {@link #toBinary()}, false
+	 * if it is something else such as JSON
+	 *
+	 * @param data
+	 * @return
+	 */
+	public static boolean isBinary(byte[] data) {
+		return SerializedMapCodec.isEncoded(data);
+	}
 }
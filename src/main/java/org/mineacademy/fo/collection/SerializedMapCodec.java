@@ -0,0 +1,323 @@
+package org.mineacademy.fo.collection;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.mineacademy.fo.exception.FoException;
+
+/**
+ * Encodes serialized values of {@link SerializedMap} into a compact binary form.
+ *
+ * The first byte tells the format, followed by a type tag and the value itself.
+ * Strings and byte counts are length-prefixed with variable-length integers,
+ * maps and lists are prefixed with their size.
+ *
+ * Payloads larger than the given threshold are compressed using deflate
+ * when that makes them smaller.
+ */
+final class SerializedMapCodec {
+
+	/**
+	 * The first byte of uncompressed and compressed payloads. They cannot
+	 * appear at the start of JSON, allowing us to tell both formats apart.
+	 */
+	static final byte FORMAT_PLAIN = (byte) 0xB1, FORMAT_DEFLATED = (byte) 0xB2;
+
+	/**
+	 * Value type tags
+	 */
+	private static final byte NULL = 0, STRING = 1, INTEGER = 2, LONG = 3, DOUBLE = 4, TRUE = 5, FALSE = 6, MAP = 7, LIST = 8, FLOAT = 9, SHORT = 10, BYTE = 11;
+
+	private SerializedMapCodec() {
+	}
+
+	/**
+	 * Encodes the already serialized value, see {@link SerializedMap#serialize()}
+	 *
+	 * @param serialized
+	 * @param compressionThreshold payloads over this amount of bytes are deflated, -1 to never deflate
+	 * @return
+	 */
+	static byte[] encode(Object serialized, int compressionThreshold) {
+		try {
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+			final DataOutputStream output = new DataOutputStream(bytes);
+
+			output.writeByte(FORMAT_PLAIN);
+			writeValue(output, serialized);
+			output.flush();
+
+			final byte[] plain = bytes.toByteArray();
+
+			if (compressionThreshold == -1 || plain.length <= compressionThreshold)
+				return plain;
+
+			final ByteArrayOutputStream compressed = new ByteArrayOutputStream(plain.length / 2);
+			compressed.write(FORMAT_DEFLATED);
+
+			final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+			try (DeflaterOutputStream deflating = new DeflaterOutputStream(compressed, deflater)) {
+				deflating.write(plain, 1, plain.length - 1);
+
+			} finally {
+				deflater.end();
+			}
+
+			return compressed.size() < plain.length ? compressed.toByteArray() : plain;
+
+		} catch (final IOException ex) {
+			throw new FoException(ex, "Failed to encode " + serialized);
+		}
+	}
+
+	/**
+	 * Decodes a payload created by {@link #encode(Object, int)}
+	 *
+	 * @param payload
+	 * @return
+	 */
+	static Object decode(byte[] payload) {
+		if (!isEncoded(payload))
+			throw new FoException("Not a binary serialized map payload");
+
+		InputStream stream = new ByteArrayInputStream(payload, 1, payload.length - 1);
+
+		if (payload[0] == FORMAT_DEFLATED)
+			stream = new InflaterInputStream(stream);
+
+		try (DataInputStream input = new DataInputStream(stream)) {
+			return readValue(input);
+
+		} catch (final IOException ex) {
+			throw new FoException(ex, "Failed to decode binary serialized map of " + payload.length + " bytes");
+		}
+	}
+
+	/**
+	 * Return true if the payload was created by {@link #encode(Object, int)}
+	 *
+	 * @param payload
+	 * @return
+	 */
+	static boolean isEncoded(byte[] payload) {
+		return payload != null && payload.length > 0 && (payload[0] == FORMAT_PLAIN || payload[0] == FORMAT_DEFLATED);
+	}
+
+	/*
+	 * Write the type tag and the value
+	 */
+	private static void writeValue(DataOutputStream output, Object value) throws IOException {
+		if (value == null)
+			output.writeByte(NULL);
+
+		else if (value instanceof String) {
+			output.writeByte(STRING);
+			writeString(output, (String) value);
+
+		} else if (value instanceof Integer) {
+			output.writeByte(INTEGER);
+			writeVarInt(output, zigZag((Integer) value));
+
+		} else if (value instanceof Long) {
+			output.writeByte(LONG);
+			output.writeLong((Long) value);
+
+		} else if (value instanceof Double) {
+			output.writeByte(DOUBLE);
+			output.writeDouble((Double) value);
+
+		} else if (value instanceof Float) {
+			output.writeByte(FLOAT);
+			output.writeFloat((Float) value);
+
+		} else if (value instanceof Short) {
+			output.writeByte(SHORT);
+			output.writeShort((Short) value);
+
+		} else if (value instanceof Byte) {
+			output.writeByte(BYTE);
+			output.writeByte((Byte) value);
+
+		} else if (value instanceof Boolean)
+			output.writeByte((Boolean) value ? TRUE : FALSE);
+
+		else if (value instanceof Map) {
+			final Map<?, ?> map = (Map<?, ?>) value;
+
+			output.writeByte(MAP);
+			writeVarInt(output, map.size());
+
+			for (final Map.Entry<?, ?> entry : map.entrySet()) {
+				writeString(output, String.valueOf(entry.getKey()));
+				writeValue(output, entry.getValue());
+			}
+
+		} else if (value instanceof Iterable) {
+			final List<Object> list = new ArrayList<>();
+
+			for (final Object element : (Iterable<?>) value)
+				list.add(element);
+
+			output.writeByte(LIST);
+			writeVarInt(output, list.size());
+
+			for (final Object element : list)
+				writeValue(output, element);
+
+		} else if (value instanceof Object[]) {
+			final Object[] array = (Object[]) value;
+
+			output.writeByte(LIST);
+			writeVarInt(output, array.length);
+
+			for (final Object element : array)
+				writeValue(output, element);
+
+		} else {
+			output.writeByte(STRING);
+			writeString(output, value.toString());
+		}
+	}
+
+	/*
+	 * Read a value written by writeValue
+	 */
+	private static Object readValue(DataInputStream input) throws IOException {
+		final byte type = input.readByte();
+
+		switch (type) {
+			case NULL:
+				return null;
+
+			case STRING:
+				return readString(input);
+
+			case INTEGER:
+				return unZigZag(readVarInt(input));
+
+			case LONG:
+				return input.readLong();
+
+			case DOUBLE:
+				return input.readDouble();
+
+			case FLOAT:
+				return input.readFloat();
+
+			case SHORT:
+				return input.readShort();
+
+			case BYTE:
+				return input.readByte();
+
+			case TRUE:
+				return true;
+
+			case FALSE:
+				return false;
+
+			case MAP: {
+				final int size = readVarInt(input);
+				final Map<String, Object> map = new LinkedHashMap<>(Math.max(16, size * 2));
+
+				for (int i = 0; i < size; i++) {
+					final String key = readString(input);
+
+					map.put(key, readValue(input));
+				}
+
+				return map;
+			}
+
+			case LIST: {
+				final int size = readVarInt(input);
+				final List<Object> list = new ArrayList<>(size);
+
+				for (int i = 0; i < size; i++)
+					list.add(readValue(input));
+
+				return list;
+			}
+
+			default:
+				throw new IOException("Unknown value type " + type);
+		}
+	}
+
+	/*
+	 * Write a length-prefixed UTF-8 string
+	 */
+	private static void writeString(DataOutputStream output, String value) throws IOException {
+		final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+		writeVarInt(output, bytes.length);
+		output.write(bytes);
+	}
+
+	/*
+	 * Read a string written by writeString
+	 */
+	private static String readString(DataInputStream input) throws IOException {
+		final byte[] bytes = new byte[readVarInt(input)];
+		input.readFully(bytes);
+
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/*
+	 * Write an unsigned integer using 7 bits per byte
+	 */
+	private static void writeVarInt(DataOutputStream output, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			output.writeByte(value & 0x7F | 0x80);
+
+			value >>>= 7;
+		}
+
+		output.writeByte(value);
+	}
+
+	/*
+	 * Read an integer written by writeVarInt
+	 */
+	private static int readVarInt(DataInputStream input) throws IOException {
+		int value = 0;
+
+		for (int shift = 0; shift < 35; shift += 7) {
+			final byte read = input.readByte();
+			value |= (read & 0x7F) << shift;
+
+			if ((read & 0x80) == 0)
+				return value;
+		}
+
+		throw new IOException("Variable-length integer is too long");
+	}
+
+	/*
+	 * Map signed integers to unsigned so that small negative numbers stay short
+	 */
+	private static int zigZag(int value) {
+		return value << 1 ^ value >> 31;
+	}
+
+	/*
+	 * Reverse zigZag
+	 */
+	private static int unZigZag(int value) {
+		return value >>> 1 ^ -(value & 1);
+	}
+}
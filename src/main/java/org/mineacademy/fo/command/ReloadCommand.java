@@ -19,8 +19,10 @@ public final class ReloadCommand extends SimpleSubCommand {
 	@Override
 	protected void onCommand() {
 		try {
-			SimplePlugin.getInstance().reload();
-			Common.tell(sender, SimpleLocalization.Commands.RELOAD_SUCCESS.replace("{plugin_name}", SimplePlugin.getNamed()).replace("{plugin_version}", SimplePlugin.getVersion()));
+			if (SimplePlugin.getInstance().reload())
+				Common.tell(sender, SimpleLocalization.Commands.RELOAD_SUCCESS.replace("{plugin_name}", SimplePlugin.getNamed()).replace("{plugin_version}", SimplePlugin.getVersion()));
+			else
+				Common.tell(sender, SimpleLocalization.Commands.RELOAD_FAIL.replace("{error}", "the reload was aborted and the old settings are kept"));
 
 		} catch (final Throwable t) {
 			Common.tell(sender, SimpleLocalization.Commands.RELOAD_FAIL.replace("{error}", t.getMessage() != null ? t.getMessage() : "unknown"));
@@ -0,0 +1,557 @@
+package org.mineacademy.fo.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.mineacademy.fo.collection.expiringmap.NamedThreadFactory;
+import org.mineacademy.fo.debug.Debugger;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * A small bounded pool of JDBC connections used by {@link SimpleDatabase}
+ *
+ * Each call checks out its own connection, so independent queries
+ * run in parallel instead of waiting on a single shared connection.
+ *
+ * Connections returned by {@link #getConnection()} are proxies, calling
+ * close() on them returns the underlying connection back to the pool.
+ *
+ * Each connection also caches its prepared statements by their SQL, so
+ * preparing the same SQL again reuses the already parsed statement.
+ */
+final class ConnectionPool {
+
+	/**
+	 * Connections idle for longer than this are validated with a ping
+	 * before being handed out again
+	 */
+	private static final long VALIDATION_INTERVAL_MS = 5_000;
+
+	/**
+	 * How long to wait for a ping when validating in seconds
+	 */
+	private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+	/**
+	 * How many prepared statements each connection keeps cached
+	 */
+	private static final int STATEMENT_CACHE_SIZE = 64;
+
+	/**
+	 * The shortest delay between two evictions of idle connections
+	 */
+	private static final long MIN_EVICTION_INTERVAL_MS = 1_000;
+
+	/**
+	 * The thread closing idle connections of all pools so that they are
+	 * closed even when the pool is not used
+	 */
+	private static final ScheduledThreadPoolExecutor evictor = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("Foundation-Pool-Evictor-%d"));
+
+	static {
+		evictor.setRemoveOnCancelPolicy(true);
+	}
+
+	/**
+	 * The connecting URL
+	 */
+	private final String url;
+
+	/**
+	 * The user name for the database
+	 */
+	private final String user;
+
+	/**
+	 * The password for the database
+	 */
+	private final String password;
+
+	/**
+	 * Connections idle for longer than this are closed
+	 */
+	private final long idleTimeoutMs;
+
+	/**
+	 * How long to wait for a free connection before failing
+	 */
+	private final long checkoutTimeoutMs;
+
+	/**
+	 * Limits how many connections may be checked out at once
+	 */
+	private final Semaphore permits;
+
+	/**
+	 * Connections currently not in use, the most recently used is first
+	 */
+	private final Deque<PooledConnection> idle = new ArrayDeque<>();
+
+	/**
+	 * The task periodically closing idle connections
+	 */
+	private final ScheduledFuture<?> evictionTask;
+
+	/**
+	 * Whether the last attempt to open or validate a connection succeeded
+	 */
+	@Getter
+	private volatile boolean healthy = true;
+
+	/**
+	 * Whether {@link #close()} has been called
+	 */
+	@Getter
+	private volatile boolean closed = false;
+
+	/**
+	 * Create a new pool, no connections are opened until requested
+	 *
+	 * @param url
+	 * @param user
+	 * @param password
+	 * @param maxSize
+	 * @param idleTimeoutMs
+	 * @param checkoutTimeoutMs
+	 */
+	ConnectionPool(String url, String user, String password, int maxSize, long idleTimeoutMs, long checkoutTimeoutMs) {
+		this.url = url;
+		this.user = user;
+		this.password = password;
+		this.idleTimeoutMs = idleTimeoutMs;
+		this.checkoutTimeoutMs = checkoutTimeoutMs;
+		this.permits = new Semaphore(Math.max(1, maxSize), true);
+
+		final long evictionInterval = Math.max(MIN_EVICTION_INTERVAL_MS, idleTimeoutMs / 2);
+
+		this.evictionTask = evictor.scheduleWithFixedDelay(this::evictIdle, evictionInterval, evictionInterval, TimeUnit.MILLISECONDS);
+	}
+
+	// --------------------------------------------------------------------
+	// Checkout
+	// --------------------------------------------------------------------
+
+	/**
+	 * Checks out a connection from the pool, opening a new one if
+	 * none is idle. Close the returned connection to return it.
+	 *
+	 * @return
+	 * @throws SQLException if the pool is exhausted or the connection fails
+	 */
+	Connection getConnection() throws SQLException {
+		final PooledConnection pooled = borrow();
+
+		return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(), new Class<?>[] { Connection.class }, new ConnectionHandler(pooled));
+	}
+
+	/**
+	 * Checks out a connection and prepares the given statement on it.
+	 * Closing the statement also returns the connection to the pool.
+	 *
+	 * @param sql
+	 * @return
+	 * @throws SQLException
+	 */
+	PreparedStatement prepareStatement(String sql) throws SQLException {
+		final Connection connection = getConnection();
+
+		try {
+			final PreparedStatement statement = connection.prepareStatement(sql);
+
+			return (PreparedStatement) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(), new Class<?>[] { PreparedStatement.class }, new StatementHandler(statement, connection));
+
+		} catch (final SQLException ex) {
+			connection.close();
+
+			throw ex;
+		}
+	}
+
+	/*
+	 * Acquire a permit and find or open a working connection
+	 */
+	private PooledConnection borrow() throws SQLException {
+		if (closed)
+			throw new SQLException("Connection pool has been closed");
+
+		try {
+			if (!permits.tryAcquire(checkoutTimeoutMs, TimeUnit.MILLISECONDS))
+				throw new SQLException("Timed out after " + checkoutTimeoutMs + " ms waiting for a free database connection");
+
+		} catch (final InterruptedException ex) {
+			Thread.currentThread().interrupt();
+
+			throw new SQLException("Interrupted while waiting for a free database connection", ex);
+		}
+
+		try {
+			PooledConnection pooled;
+
+			while ((pooled = pollIdle()) != null) {
+				if (System.currentTimeMillis() - pooled.lastUsed < VALIDATION_INTERVAL_MS || validate(pooled))
+					return pooled;
+
+				pooled.closeQuietly();
+			}
+
+			return open();
+
+		} catch (final SQLException | RuntimeException ex) {
+			permits.release();
+
+			throw ex;
+		}
+	}
+
+	/*
+	 * Take the most recently used idle connection, closing those idle for too long
+	 */
+	private synchronized PooledConnection pollIdle() {
+		evictIdle();
+
+		return idle.pollFirst();
+	}
+
+	/*
+	 * Ping the connection, returning false if it is no longer usable
+	 */
+	private boolean validate(PooledConnection pooled) {
+		try {
+			healthy = pooled.connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+
+		} catch (final SQLException ex) {
+			healthy = false;
+		}
+
+		return healthy;
+	}
+
+	/*
+	 * Open a brand new connection to the database
+	 */
+	private PooledConnection open() throws SQLException {
+		try {
+			final Connection connection = DriverManager.getConnection(url, user, password);
+			healthy = true;
+
+			Debugger.debug("mysql", "Opened a new pooled connection to " + url);
+			return new PooledConnection(connection);
+
+		} catch (final SQLException ex) {
+			healthy = false;
+
+			throw ex;
+		}
+	}
+
+	/*
+	 * Put the connection back into the pool, or close it if it is broken
+	 */
+	private void release(PooledConnection pooled) {
+		try {
+			boolean reusable;
+
+			try {
+				reusable = !closed && !pooled.connection.isClosed();
+
+				if (reusable && !pooled.connection.getAutoCommit()) {
+					pooled.connection.rollback();
+					pooled.connection.setAutoCommit(true);
+				}
+
+			} catch (final SQLException ex) {
+				reusable = false;
+			}
+
+			if (reusable) {
+				pooled.releaseStatements();
+
+				synchronized (this) {
+					pooled.lastUsed = System.currentTimeMillis();
+					idle.offerFirst(pooled);
+
+					evictIdle();
+				}
+
+			} else
+				pooled.closeQuietly();
+
+		} finally {
+			permits.release();
+		}
+	}
+
+	/*
+	 * Close connections that sat idle for longer than the idle timeout,
+	 * they are at the end of the deque since we always reuse from the start.
+	 * Also runs periodically on the evictor thread.
+	 */
+	private synchronized void evictIdle() {
+		final long threshold = System.currentTimeMillis() - idleTimeoutMs;
+
+		for (final Iterator<PooledConnection> it = idle.descendingIterator(); it.hasNext();) {
+			final PooledConnection pooled = it.next();
+
+			if (pooled.lastUsed >= threshold)
+				break;
+
+			it.remove();
+			pooled.closeQuietly();
+		}
+	}
+
+	// --------------------------------------------------------------------
+	// Closing
+	// --------------------------------------------------------------------
+
+	/**
+	 * Closes all idle connections and marks the pool as closed, connections
+	 * still checked out are closed when returned
+	 */
+	synchronized void close() {
+		closed = true;
+		evictionTask.cancel(false);
+
+		for (final PooledConnection pooled : idle)
+			pooled.closeQuietly();
+
+		idle.clear();
+	}
+
+	// --------------------------------------------------------------------
+	// Classes
+	// --------------------------------------------------------------------
+
+	/**
+	 * A physical connection with its last usage time and cached statements
+	 */
+	@RequiredArgsConstructor
+	private static final class PooledConnection {
+
+		/**
+		 * The underlying JDBC connection
+		 */
+		private final Connection connection;
+
+		/**
+		 * Prepared statements by their SQL, least recently used first
+		 */
+		private final Map<String, CachedStatement> statements = new LinkedHashMap<String, CachedStatement>(16, 0.75F, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+				if (size() > STATEMENT_CACHE_SIZE && !eldest.getValue().inUse) {
+					eldest.getValue().closeQuietly();
+
+					return true;
+				}
+
+				return false;
+			}
+		};
+
+		/**
+		 * When this connection was last returned to the pool
+		 */
+		private long lastUsed = System.currentTimeMillis();
+
+		/*
+		 * Return a cached statement for the SQL, or prepare and cache a new one.
+		 * If the cached statement is already in use we prepare an uncached one.
+		 */
+		private PreparedStatement prepareStatement(String sql) throws SQLException {
+			CachedStatement cached = statements.get(sql);
+
+			if (cached != null && cached.inUse)
+				return connection.prepareStatement(sql);
+
+			if (cached == null || cached.statement.isClosed()) {
+				cached = new CachedStatement(connection.prepareStatement(sql));
+
+				statements.put(sql, cached);
+			}
+
+			cached.inUse = true;
+
+			return (PreparedStatement) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(), new Class<?>[] { PreparedStatement.class }, cached);
+		}
+
+		/*
+		 * Mark all cached statements as free, called when the connection is returned
+		 */
+		private void releaseStatements() {
+			for (final CachedStatement cached : statements.values())
+				cached.inUse = false;
+		}
+
+		/*
+		 * Close the underlying connection ignoring errors
+		 */
+		private void closeQuietly() {
+			try {
+				connection.close();
+
+			} catch (final SQLException ex) {
+				// Already broken
+			}
+		}
+	}
+
+	/**
+	 * Delegates to a cached prepared statement, calling close() on it
+	 * only clears its parameters so that it can be reused
+	 */
+	@RequiredArgsConstructor
+	private static final class CachedStatement implements InvocationHandler {
+
+		/**
+		 * The real statement
+		 */
+		private final PreparedStatement statement;
+
+		/**
+		 * Whether the statement is currently handed out
+		 */
+		private boolean inUse = false;
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if ("close".equals(method.getName())) {
+				if (inUse) {
+					inUse = false;
+
+					statement.clearParameters();
+					statement.clearBatch();
+				}
+
+				return null;
+			}
+
+			if ("isClosed".equals(method.getName()))
+				return !inUse || statement.isClosed();
+
+			return invokeUnwrapped(method, statement, args);
+		}
+
+		/*
+		 * Close the real statement ignoring errors
+		 */
+		private void closeQuietly() {
+			try {
+				statement.close();
+
+			} catch (final SQLException ex) {
+				// Already closed with the connection
+			}
+		}
+	}
+
+	/**
+	 * Delegates to a pooled connection, returning it on close()
+	 */
+	@RequiredArgsConstructor
+	private final class ConnectionHandler implements InvocationHandler {
+
+		/**
+		 * The checked out connection
+		 */
+		private final PooledConnection pooled;
+
+		/**
+		 * Whether this handle was already returned to the pool
+		 */
+		private boolean returned = false;
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			final String name = method.getName();
+
+			if ("close".equals(name)) {
+				if (!returned) {
+					returned = true;
+
+					release(pooled);
+				}
+
+				return null;
+			}
+
+			if ("isClosed".equals(name))
+				return returned || pooled.connection.isClosed();
+
+			if (returned)
+				throw new SQLException("Connection has already been returned to the pool");
+
+			if ("prepareStatement".equals(name) && args.length == 1)
+				return pooled.prepareStatement((String) args[0]);
+
+			return invokeUnwrapped(method, pooled.connection, args);
+		}
+	}
+
+	/**
+	 * Delegates to a prepared statement, returning its connection on close()
+	 */
+	@RequiredArgsConstructor
+	private static final class StatementHandler implements InvocationHandler {
+
+		/**
+		 * The real statement
+		 */
+		private final PreparedStatement statement;
+
+		/**
+		 * The pooled connection proxy the statement was prepared on
+		 */
+		private final Connection connection;
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if ("close".equals(method.getName())) {
+				try {
+					statement.close();
+
+				} finally {
+					connection.close();
+				}
+
+				return null;
+			}
+
+			if ("getConnection".equals(method.getName()))
+				return connection;
+
+			return invokeUnwrapped(method, statement, args);
+		}
+	}
+
+	/*
+	 * Invoke the method rethrowing the original exception instead of its reflective wrapper
+	 */
+	private static Object invokeUnwrapped(Method method, Object target, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+
+		} catch (final InvocationTargetException ex) {
+			throw ex.getCause();
+		}
+	}
+}
@@ -0,0 +1,368 @@
+package org.mineacademy.fo.database;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+
+import org.mineacademy.fo.Common;
+import org.mineacademy.fo.debug.Debugger;
+
+/**
+ * Stores rows of {@link SimpleFlatDatabase} in a local append-only file,
+ * requiring no database server. Suitable for single servers and small networks.
+ *
+ * All rows are kept in memory, loading is a map lookup. Each save appends
+ * the changed rows to the end of the file. Once the file holds more outdated
+ * records than current ones, it is rewritten with only the current rows.
+ *
+ * If the server crashes while writing, the incomplete record at the end
+ * of the file is discarded on the next start.
+ */
+public final class FileFlatStorage implements FlatStorage {
+
+	/**
+	 * Written at the start of the file to recognize it
+	 */
+	private static final int MAGIC = 0x464C4154;
+
+	/**
+	 * The file format version
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * Record types
+	 */
+	private static final byte TYPE_PUT = 1, TYPE_REMOVE = 2;
+
+	/**
+	 * The file we store rows in
+	 */
+	private final File file;
+
+	/**
+	 * The current rows, by unique id
+	 */
+	private final Map<UUID, Row> rows = new HashMap<>();
+
+	/**
+	 * How many records in the file were replaced or removed by later records
+	 */
+	private int outdatedRecords = 0;
+
+	/**
+	 * The stream we append records to, null when closed
+	 */
+	private DataOutputStream output;
+
+	/**
+	 * The file stream under {@link #output}, used to force appended records to disk
+	 */
+	private FileOutputStream fileOutput;
+
+	/**
+	 * Create a new storage in the given file, created if it does not exist
+	 *
+	 * @param file
+	 */
+	public FileFlatStorage(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Reads all rows from the file and opens it for appending
+	 */
+	@Override
+	public synchronized void open() throws IOException {
+		rows.clear();
+		outdatedRecords = 0;
+
+		if (file.getParentFile() != null)
+			file.getParentFile().mkdirs();
+
+		if (file.exists() && file.length() > 0)
+			read();
+		else
+			rewrite();
+
+		openOutput();
+
+		Debugger.debug("mysql", "Loaded " + rows.size() + " row(s) from " + file.getName());
+	}
+
+	/*
+	 * Replay all records from the file, truncating an incomplete last record
+	 */
+	private void read() throws IOException {
+		long validLength = 0;
+
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (input.readInt() != MAGIC)
+				throw new IOException("File " + file + " is not a flat database file");
+
+			final int version = input.readInt();
+
+			if (version != VERSION)
+				throw new IOException("Unsupported flat database file version " + version + " in " + file);
+
+			validLength = 8;
+
+			while (true) {
+				final byte type;
+
+				try {
+					type = input.readByte();
+				} catch (final EOFException ex) {
+					break;
+				}
+
+				try {
+					final UUID uuid = new UUID(input.readLong(), input.readLong());
+
+					if (type == TYPE_PUT) {
+						final long remaining = file.length() - validLength;
+						final byte[] name = readBytes(input, remaining);
+						final long updated = input.readLong();
+						final byte[] data = readBytes(input, remaining);
+
+						if (rows.put(uuid, new Row(uuid, toString(name), data, updated)) != null)
+							outdatedRecords++;
+
+						validLength += 1 + 16 + 4 + (name == null ? 0 : name.length) + 8 + 4 + (data == null ? 0 : data.length);
+
+					} else if (type == TYPE_REMOVE) {
+						rows.remove(uuid);
+						outdatedRecords++;
+
+						validLength += 1 + 16;
+
+					} else
+						throw new IOException("Unknown record type " + type);
+
+				} catch (final EOFException ex) {
+					Common.log("Discarding an incomplete record at the end of " + file.getName() + ", the server likely crashed while saving.");
+
+					break;
+				}
+			}
+		}
+
+		if (validLength < file.length())
+			try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+				raf.setLength(validLength);
+			}
+	}
+
+	@Override
+	public synchronized Map<UUID, byte[]> fetch(Collection<UUID> uuids) {
+		final Map<UUID, byte[]> found = new HashMap<>();
+
+		for (final UUID uuid : uuids) {
+			final Row row = rows.get(uuid);
+
+			if (row != null)
+				found.put(uuid, row.getData());
+		}
+
+		return found;
+	}
+
+	/**
+	 * Appends the rows to the file and forces them to disk
+	 *
+	 * If appending fails half way we rewrite the whole file so that it does
+	 * not end with an incomplete record followed by new ones
+	 */
+	@Override
+	public synchronized void write(Collection<Row> changes) throws IOException {
+		checkOpen();
+
+		try {
+			for (final Row row : changes)
+				if (row.getData() == null) {
+					if (rows.remove(row.getUuid()) != null) {
+						writeRemove(output, row.getUuid());
+
+						outdatedRecords += 2;
+					}
+
+				} else {
+					if (rows.put(row.getUuid(), row) != null)
+						outdatedRecords++;
+
+					writePut(output, row);
+				}
+
+			output.flush();
+			fileOutput.getFD().sync();
+
+		} catch (final IOException ex) {
+			Common.error(ex, "Failed to append to " + file.getName() + ", rewriting it");
+
+			reopen();
+			return;
+		}
+
+		if (outdatedRecords >= 1000 && outdatedRecords >= rows.size())
+			reopen();
+	}
+
+	@Override
+	public synchronized void removeOlderThan(long threshold) throws IOException {
+		checkOpen();
+
+		boolean changed = false;
+
+		for (final Iterator<Row> it = rows.values().iterator(); it.hasNext();)
+			if (it.next().getUpdated() < threshold) {
+				it.remove();
+
+				changed = true;
+			}
+
+		if (changed)
+			reopen();
+	}
+
+	@Override
+	public synchronized void close() {
+		if (output != null)
+			try {
+				output.close();
+
+			} catch (final IOException ex) {
+				Common.error(ex, "Failed to close " + file);
+			}
+
+		output = null;
+		fileOutput = null;
+	}
+
+	/*
+	 * Rewrite the file with only the current rows and open it for appending again
+	 */
+	private void reopen() throws IOException {
+		try {
+			output.close();
+
+		} catch (final IOException ex) {
+			// Rewriting anyway
+		}
+
+		rewrite();
+		openOutput();
+	}
+
+	/*
+	 * Open the file for appending records
+	 */
+	private void openOutput() throws IOException {
+		fileOutput = new FileOutputStream(file, true);
+		output = new DataOutputStream(new BufferedOutputStream(fileOutput));
+	}
+
+	/*
+	 * Write all current rows into a temporary file and move it over the file
+	 */
+	private void rewrite() throws IOException {
+		final File temp = new File(file.getPath() + ".tmp");
+
+		try (FileOutputStream tempFileOutput = new FileOutputStream(temp); DataOutputStream tempOutput = new DataOutputStream(new BufferedOutputStream(tempFileOutput))) {
+			tempOutput.writeInt(MAGIC);
+			tempOutput.writeInt(VERSION);
+
+			for (final Row row : rows.values())
+				writePut(tempOutput, row);
+
+			tempOutput.flush();
+			tempFileOutput.getFD().sync();
+		}
+
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		outdatedRecords = 0;
+	}
+
+	/*
+	 * Ensure we were opened and not closed
+	 */
+	private void checkOpen() throws IOException {
+		if (output == null)
+			throw new IOException("Storage " + file.getName() + " is not open");
+	}
+
+	/*
+	 * Write a record storing the row
+	 */
+	private static void writePut(DataOutputStream output, Row row) throws IOException {
+		output.writeByte(TYPE_PUT);
+		output.writeLong(row.getUuid().getMostSignificantBits());
+		output.writeLong(row.getUuid().getLeastSignificantBits());
+		writeBytes(output, row.getName() == null ? null : row.getName().getBytes(StandardCharsets.UTF_8));
+		output.writeLong(row.getUpdated());
+		writeBytes(output, row.getData());
+	}
+
+	/*
+	 * Write a record removing the row
+	 */
+	private static void writeRemove(DataOutputStream output, UUID uuid) throws IOException {
+		output.writeByte(TYPE_REMOVE);
+		output.writeLong(uuid.getMostSignificantBits());
+		output.writeLong(uuid.getLeastSignificantBits());
+	}
+
+	/*
+	 * Write length-prefixed bytes, -1 length for null
+	 */
+	private static void writeBytes(DataOutputStream output, byte[] bytes) throws IOException {
+		if (bytes == null) {
+			output.writeInt(-1);
+
+			return;
+		}
+
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+
+	/*
+	 * Read bytes written by writeBytes, null if they were null. A length below -1 or above
+	 * the remaining size of the file is from a corrupt record and thrown as its end
+	 */
+	private static byte[] readBytes(DataInputStream input, long remaining) throws IOException {
+		final int length = input.readInt();
+
+		if (length == -1)
+			return null;
+
+		if (length < -1 || length > remaining)
+			throw new EOFException("Invalid length " + length);
+
+		final byte[] bytes = new byte[length];
+		input.readFully(bytes);
+
+		return bytes;
+	}
+
+	/*
+	 * Decode UTF-8 bytes, keeping null
+	 */
+	private static String toString(byte[] bytes) {
+		return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,94 @@
+package org.mineacademy.fo.database;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Represents where {@link SimpleFlatDatabase} keeps its rows.
+ *
+ * Each row holds the player's unique id, last known name, data and the time
+ * of the last save, see {@link SimpleFlatDatabase} for the structure.
+ *
+ * The data is either JSON encoded in UTF-8 or binary data from
+ * {@link org.mineacademy.fo.collection.SerializedMap#toBinary()}, storages
+ * keep it as it is and return it back unchanged.
+ *
+ * Implementations do not need to cache anything, queuing and merging saves
+ * is already done by {@link SimpleFlatDatabase}. Methods are called from
+ * the saving thread and from the threads loading data.
+ */
+public interface FlatStorage {
+
+	/**
+	 * Prepares the storage for use, such as creating the table or reading
+	 * the file. Called when the database connects.
+	 *
+	 * @throws Exception
+	 */
+	void open() throws Exception;
+
+	/**
+	 * Returns data of the given players that are stored, players without
+	 * a row are left out from the returned map
+	 *
+	 * @param uuids
+	 * @return
+	 * @throws Exception
+	 */
+	Map<UUID, byte[]> fetch(Collection<UUID> uuids) throws Exception;
+
+	/**
+	 * Stores the given rows, replacing existing rows of the same players,
+	 * or removing them if their data is null
+	 *
+	 * @param rows
+	 * @throws Exception
+	 */
+	void write(Collection<Row> rows) throws Exception;
+
+	/**
+	 * Removes rows last saved before the given time
+	 *
+	 * @param threshold the time in milliseconds
+	 * @throws Exception
+	 */
+	void removeOlderThan(long threshold) throws Exception;
+
+	/**
+	 * Releases resources held by the storage. Called when the database
+	 * shuts down after all pending saves were written.
+	 */
+	void close();
+
+	/**
+	 * A row to be written
+	 */
+	@Getter
+	@RequiredArgsConstructor
+	final class Row {
+
+		/**
+		 * The player's unique id
+		 */
+		private final UUID uuid;
+
+		/**
+		 * The last known name
+		 */
+		private final String name;
+
+		/**
+		 * The data, or null to remove the row
+		 */
+		private final byte[] data;
+
+		/**
+		 * When save was called
+		 */
+		private final long updated;
+	}
+}
@@ -0,0 +1,205 @@
+package org.mineacademy.fo.database;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.mineacademy.fo.collection.SerializedMap;
+import org.mineacademy.fo.debug.Debugger;
+import org.mineacademy.fo.exception.FoException;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Stores rows of {@link SimpleFlatDatabase} in its MySQL table, using the
+ * connection established by the connect() methods
+ *
+ * JSON data is stored as text in the Data column, binary data in the BinaryData
+ * column, so that rows written before binary data was enabled can still be read.
+ *
+ * The table is keyed by UUID and indexed by Updated, tables created by older
+ * versions are upgraded on connect, see {@link SchemaMigrator}.
+ */
+@RequiredArgsConstructor
+final class MySQLFlatStorage implements FlatStorage {
+
+	/**
+	 * How many rows we read or write at most in one statement
+	 */
+	private static final int BATCH_SIZE = 100;
+
+	/**
+	 * How many rows we remove at most in one statement when purging old rows
+	 */
+	private static final int PURGE_BATCH_SIZE = 1000;
+
+	/**
+	 * The database we run queries through
+	 */
+	private final SimpleFlatDatabase<?> database;
+
+	/**
+	 * Set when closed to stop purging old rows
+	 */
+	private volatile boolean closed = false;
+
+	/**
+	 * Creates the table if it does not exist or upgrades it to the latest version
+	 */
+	@Override
+	public void open() throws Exception {
+		new SchemaMigrator(database, database.getTable())
+				.add(1, "Create table", "CREATE TABLE IF NOT EXISTS {table}(UUID varchar(64), Name text, Data text, Updated bigint)")
+				.add(2, "Add binary data column", connection -> {
+					try (ResultSet columns = connection.getMetaData().getColumns(connection.getCatalog(), null, database.getTable(), "BinaryData")) {
+						if (columns.next())
+							return;
+					}
+
+					try (Statement statement = connection.createStatement()) {
+						statement.execute(database.replaceVariables("ALTER TABLE {table} ADD COLUMN BinaryData mediumblob"));
+					}
+				})
+
+				// Copy into a new keyed table keeping the latest row of each player, in case there are duplicates
+				.add(3, "Add primary key on UUID and index on Updated",
+						"DROP TABLE IF EXISTS {table}_v3_old",
+						"DROP TABLE IF EXISTS {table}_v3_new",
+						"CREATE TABLE {table}_v3_new(UUID varchar(64) NOT NULL, Name text, Data text, BinaryData mediumblob, Updated bigint NOT NULL DEFAULT 0, PRIMARY KEY (UUID), INDEX UpdatedIndex (Updated))",
+						"INSERT IGNORE INTO {table}_v3_new(UUID, Name, Data, BinaryData, Updated) SELECT UUID, Name, Data, BinaryData, COALESCE(Updated, 0) FROM {table} WHERE UUID IS NOT NULL ORDER BY Updated DESC",
+						"RENAME TABLE {table} TO {table}_v3_old, {table}_v3_new TO {table}",
+						"DROP TABLE {table}_v3_old")
+				.migrate();
+	}
+
+	/**
+	 * Selects the rows with one query per {@link #BATCH_SIZE} players
+	 */
+	@Override
+	public Map<UUID, byte[]> fetch(Collection<UUID> uuids) throws Exception {
+		final List<UUID> list = new ArrayList<>(uuids);
+		final Map<UUID, byte[]> rows = new HashMap<>();
+
+		for (int from = 0; from < list.size(); from += BATCH_SIZE) {
+			final List<UUID> chunk = list.subList(from, Math.min(from + BATCH_SIZE, list.size()));
+			final ResultSet resultSet = database.query("SELECT UUID, Data, BinaryData FROM {table} WHERE UUID IN (" + placeholders(chunk.size(), "?") + ")", chunk.toArray());
+
+			if (resultSet == null)
+				throw new FoException("Query failed, see above");
+
+			while (resultSet.next()) {
+				final byte[] binary = resultSet.getBytes("BinaryData");
+				final String json = resultSet.getString("Data");
+
+				rows.put(UUID.fromString(resultSet.getString("UUID")), binary != null ? binary : json != null ? json.getBytes(StandardCharsets.UTF_8) : null);
+			}
+
+			resultSet.close();
+		}
+
+		return rows;
+	}
+
+	/**
+	 * Upserts the given rows and deletes removed ones in one transaction,
+	 * using multi-row statements of up to {@link #BATCH_SIZE} rows each
+	 */
+	@Override
+	public void write(Collection<Row> rows) throws Exception {
+		final List<Row> list = new ArrayList<>(rows);
+
+		try (Connection connection = database.getConnection()) {
+			connection.setAutoCommit(false);
+
+			for (int from = 0; from < list.size(); from += BATCH_SIZE) {
+				final List<Row> chunk = list.subList(from, Math.min(from + BATCH_SIZE, list.size()));
+				final List<Row> upserts = new ArrayList<>();
+				final List<Row> removals = new ArrayList<>();
+
+				for (final Row row : chunk)
+					(row.getData() != null ? upserts : removals).add(row);
+
+				if (!removals.isEmpty())
+					try (PreparedStatement statement = connection.prepareStatement(database.replaceVariables("DELETE FROM {table} WHERE UUID IN (" + placeholders(removals.size(), "?") + ")"))) {
+						for (int i = 0; i < removals.size(); i++)
+							statement.setString(i + 1, removals.get(i).getUuid().toString());
+
+						statement.executeUpdate();
+					}
+
+				if (!upserts.isEmpty())
+					try (PreparedStatement statement = connection.prepareStatement(database.replaceVariables("INSERT INTO {table}(UUID, Name, Data, BinaryData, Updated) VALUES " + placeholders(upserts.size(), "(?, ?, ?, ?, ?)")
+							+ " ON DUPLICATE KEY UPDATE Name = VALUES(Name), Data = VALUES(Data), BinaryData = VALUES(BinaryData), Updated = VALUES(Updated)"))) {
+						int index = 1;
+
+						for (final Row row : upserts) {
+							final boolean binary = SerializedMap.isBinary(row.getData());
+
+							statement.setString(index++, row.getUuid().toString());
+							statement.setString(index++, row.getName());
+							statement.setString(index++, binary ? null : new String(row.getData(), StandardCharsets.UTF_8));
+							statement.setBytes(index++, binary ? row.getData() : null);
+							statement.setLong(index++, row.getUpdated());
+						}
+
+						statement.executeUpdate();
+					}
+			}
+
+			connection.commit();
+		}
+	}
+
+	/**
+	 * Deletes old rows in chunks of {@link #PURGE_BATCH_SIZE} so that the
+	 * table is never locked for long, stopping early when closed
+	 */
+	@Override
+	public void removeOlderThan(long threshold) throws SQLException {
+		int removed;
+		int total = 0;
+
+		do {
+			try (Connection connection = database.getConnection(); PreparedStatement statement = connection.prepareStatement(database.replaceVariables("DELETE FROM {table} WHERE Updated < ? LIMIT " + PURGE_BATCH_SIZE))) {
+				statement.setLong(1, threshold);
+
+				removed = statement.executeUpdate();
+			}
+
+			total += removed;
+
+		} while (removed == PURGE_BATCH_SIZE && !closed);
+
+		if (total > 0)
+			Debugger.debug("mysql", "Removed " + total + " expired row(s) from " + database.getTable());
+	}
+
+	/**
+	 * The connection is owned by the database, closed by its close() method
+	 */
+	@Override
+	public void close() {
+		closed = true;
+	}
+
+	/*
+	 * Join the given placeholder the given amount of times by commas
+	 */
+	private static String placeholders(int amount, String placeholder) {
+		final StringBuilder builder = new StringBuilder();
+
+		for (int i = 0; i < amount; i++)
+			builder.append(i == 0 ? "" : ", ").append(placeholder);
+
+		return builder.toString();
+	}
+}
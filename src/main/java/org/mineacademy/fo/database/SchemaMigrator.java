@@ -0,0 +1,261 @@
+package org.mineacademy.fo.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.mineacademy.fo.Common;
+import org.mineacademy.fo.Valid;
+import org.mineacademy.fo.debug.Debugger;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Brings a table up to date by running its numbered migrations that did not run yet.
+ *
+ * The version of each table is stored in the {@link #VERSION_TABLE} table.
+ * Migrations run in the order of their version and the version is stored after
+ * each one, so an interrupted upgrade continues where it stopped on the next start.
+ *
+ * MySQL commits table changes right away, so write migrations that can safely
+ * run again after a crash, for example using IF NOT EXISTS.
+ *
+ * Servers sharing the database migrate one at a time, holding a named MySQL
+ * lock while the version is read and the migrations run.
+ *
+ * Example:
+ *
+ * new SchemaMigrator(database, "players")
+ *   .add(1, "Create table", "CREATE TABLE IF NOT EXISTS {table}(UUID varchar(64), Name text)")
+ *   .add(2, "Index names", "CREATE INDEX NameIndex ON {table}(Name(16))")
+ *   .migrate();
+ */
+public final class SchemaMigrator {
+
+	/**
+	 * The table holding the schema version of each table
+	 */
+	public static final String VERSION_TABLE = "foundation_schema";
+
+	/**
+	 * How many seconds we wait for another server to finish migrating the same table
+	 */
+	private static final int LOCK_TIMEOUT_SECONDS = 300;
+
+	/**
+	 * The database we run migrations in
+	 */
+	private final SimpleDatabase database;
+
+	/**
+	 * The name we store the version under, usually the table name
+	 */
+	private final String name;
+
+	/**
+	 * Migrations in the order of their version
+	 */
+	private final List<Migration> migrations = new ArrayList<>();
+
+	/**
+	 * Create a new migrator, the SQL of migrations can use variables
+	 * of the database such as {table}
+	 *
+	 * @param database
+	 * @param name the name the version is stored under, usually the table name
+	 */
+	public SchemaMigrator(SimpleDatabase database, String name) {
+		Valid.checkBoolean(name != null && !name.isEmpty() && name.length() <= 64, "Schema name must be between 1 and 64 characters, got: " + name);
+
+		this.database = database;
+		this.name = name;
+	}
+
+	/**
+	 * Add a migration running the given SQL statements in order
+	 *
+	 * @param version higher than the version of the last added migration
+	 * @param description
+	 * @param statements
+	 * @return
+	 */
+	public SchemaMigrator add(int version, String description, String... statements) {
+		return add(version, description, connection -> {
+			try (Statement statement = connection.createStatement()) {
+				for (final String sql : statements)
+					statement.execute(database.replaceVariables(sql));
+			}
+		});
+	}
+
+	/**
+	 * Add a migration running the given code, such as when it
+	 * depends on what the table looks like
+	 *
+	 * @param version higher than the version of the last added migration
+	 * @param description
+	 * @param step
+	 * @return
+	 */
+	public SchemaMigrator add(int version, String description, Step step) {
+		Valid.checkBoolean(version > 0, "Migration version must be above 0, got: " + version);
+		Valid.checkBoolean(migrations.isEmpty() || migrations.get(migrations.size() - 1).version < version, "Migrations must be added in ascending version order, got " + version + " after " + getLatestVersion());
+
+		migrations.add(new Migration(version, description, step));
+		return this;
+	}
+
+	/**
+	 * Return the version of the last added migration, or 0 if none
+	 *
+	 * @return
+	 */
+	public int getLatestVersion() {
+		return migrations.isEmpty() ? 0 : migrations.get(migrations.size() - 1).version;
+	}
+
+	/**
+	 * Run all migrations with a version higher than the stored one
+	 *
+	 * Waits for other servers migrating the same table to finish first.
+	 *
+	 * @return the version the table is at now
+	 * @throws SQLException if a migration failed, the versions before it are kept
+	 */
+	public int migrate() throws SQLException {
+		try (Connection connection = database.getConnection()) {
+			try (Statement statement = connection.createStatement()) {
+				statement.execute("CREATE TABLE IF NOT EXISTS " + VERSION_TABLE + "(Name varchar(64) NOT NULL PRIMARY KEY, Version int NOT NULL)");
+			}
+
+			final String lock = getLockName();
+
+			acquireLock(connection, lock);
+
+			try {
+				return migrate(connection);
+
+			} finally {
+				releaseLock(connection, lock);
+			}
+		}
+	}
+
+	/*
+	 * Read the version and run the migrations after it, the lock must be held
+	 */
+	private int migrate(Connection connection) throws SQLException {
+		int current = 0;
+
+		try (PreparedStatement statement = connection.prepareStatement("SELECT Version FROM " + VERSION_TABLE + " WHERE Name = ?")) {
+			statement.setString(1, name);
+
+			try (ResultSet resultSet = statement.executeQuery()) {
+				if (resultSet.next())
+					current = resultSet.getInt("Version");
+			}
+		}
+
+		Valid.checkBoolean(current <= getLatestVersion(), "Table " + name + " is at version " + current + " which is newer than this plugin supports (" + getLatestVersion() + "), please update the plugin");
+
+		for (final Migration migration : migrations) {
+			if (migration.version <= current)
+				continue;
+
+			Common.log("Upgrading table " + name + " to version " + migration.version + ": " + migration.description);
+
+			migration.step.run(connection);
+
+			try (PreparedStatement statement = connection.prepareStatement("INSERT INTO " + VERSION_TABLE + "(Name, Version) VALUES(?, ?) ON DUPLICATE KEY UPDATE Version = VALUES(Version)")) {
+				statement.setString(1, name);
+				statement.setInt(2, migration.version);
+
+				statement.executeUpdate();
+			}
+
+			current = migration.version;
+		}
+
+		Debugger.debug("mysql", "Table " + name + " is at schema version " + current);
+
+		return current;
+	}
+
+	/*
+	 * Return the name of the MySQL lock for this table, at most 64 characters long
+	 */
+	private String getLockName() {
+		final String lock = VERSION_TABLE + "_" + name;
+
+		return lock.length() <= 64 ? lock : VERSION_TABLE + "_" + Integer.toHexString(name.hashCode());
+	}
+
+	/*
+	 * Wait until we hold the named lock, throwing if another server holds it for too long
+	 */
+	private void acquireLock(Connection connection, String lock) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+			statement.setString(1, lock);
+			statement.setInt(2, LOCK_TIMEOUT_SECONDS);
+
+			try (ResultSet resultSet = statement.executeQuery()) {
+				if (!resultSet.next() || resultSet.getInt(1) != 1)
+					throw new SQLException("Timed out waiting " + LOCK_TIMEOUT_SECONDS + " seconds for another server to finish upgrading table " + name);
+			}
+		}
+	}
+
+	/*
+	 * Release the named lock so that other servers can check the version
+	 */
+	private void releaseLock(Connection connection, String lock) {
+		try (PreparedStatement statement = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+			statement.setString(1, lock);
+			statement.executeQuery().close();
+
+		} catch (final SQLException ex) {
+			Common.error(ex, "Failed to release the schema lock of table " + name);
+		}
+	}
+
+	/**
+	 * Code changing the table
+	 */
+	@FunctionalInterface
+	public interface Step {
+
+		/**
+		 * Run the migration using the given connection
+		 *
+		 * @param connection
+		 * @throws SQLException
+		 */
+		void run(Connection connection) throws SQLException;
+	}
+
+	/**
+	 * A migration with its version
+	 */
+	@RequiredArgsConstructor
+	private static final class Migration {
+
+		/**
+		 * The version the table is at after running this migration
+		 */
+		private final int version;
+
+		/**
+		 * What the migration does, shown in the console
+		 */
+		private final String description;
+
+		/**
+		 * The code to run
+		 */
+		private final Step step;
+	}
+}
@@ -1,16 +1,27 @@
 package org.mineacademy.fo.database;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.Map.Entry;
+import java.sql.Types;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetFactory;
+import javax.sql.rowset.RowSetProvider;
 
 import org.mineacademy.fo.Common;
 import org.mineacademy.fo.Valid;
 import org.mineacademy.fo.collection.StrictMap;
 import org.mineacademy.fo.debug.Debugger;
+import org.mineacademy.fo.exception.FoException;
 
 import lombok.RequiredArgsConstructor;
 
@@ -22,14 +33,26 @@ import lombok.RequiredArgsConstructor;
  * You can also override {@link #onConnected()} to run your code after the
  * connection has been established.
  *
+ * Connections are pooled, each query checks out its own connection so that
+ * independent queries run in parallel. See {@link #getMaxConnections()}.
+ *
+ * Prefer {@link #update(String, Object...)} and {@link #query(String, Object...)}
+ * with ? placeholders for values, their statements are cached per connection.
+ *
  * To use this class you must know the MySQL command syntax!
  */
 public class SimpleDatabase {
 
 	/**
-	 * The established connection, or null if none
+	 * Creates the in-memory copies of rows returned by the query methods,
+	 * looked up once since finding the implementation is slow
 	 */
-	private Connection connection;
+	private static final RowSetFactory ROW_SET_FACTORY = createRowSetFactory();
+
+	/**
+	 * The connection pool, or null if never connected
+	 */
+	private volatile ConnectionPool pool;
 
 	/**
 	 * The last credentials from the connect function, or null if never called
@@ -86,7 +109,7 @@ public class SimpleDatabase {
 	 * @param autoReconnect
 	 */
 	public final void connect(String host, int port, String database, String user, String password, String table, boolean autoReconnect) {
-		connect("jdbc:mysql://" + host + ":" + port + "/" + database + "?autoReconnect=" + autoReconnect, user, password, table);
+		connect("jdbc:mysql://" + host + ":" + port + "/" + database + "?autoReconnect=" + autoReconnect + "&useServerPrepStmts=true&useCursorFetch=true", user, password, table);
 	}
 
 	/**
@@ -112,35 +135,93 @@ public class SimpleDatabase {
 	public final void connect(String url, String user, String password, String table) {
 		this.lastCredentials = new LastCredentials(url, user, password, table);
 
-		try {
-			this.connection = DriverManager.getConnection(url, user, password);
+		final ConnectionPool oldPool = this.pool;
+		final ConnectionPool newPool = new ConnectionPool(url, user, password, getMaxConnections(), getConnectionIdleTimeoutMillis(), getConnectionTimeoutMillis());
 
-			onConnected();
+		// Open the first connection right away to fail early on wrong credentials
+		try (Connection connection = newPool.getConnection()) {
+			this.pool = newPool;
 
 		} catch (final SQLException e) {
+			newPool.close();
 			e.printStackTrace();
 
+			// Do not report the database as loaded when it has no working pool
+			this.pool = null;
+
 			Common.logFramed(true,
 					"Failed to connect to MySQL database",
 					"URL: " + url,
 					"Error: " + e.getMessage());
+
+		} finally {
+
+			// Only close the old pool once the new one replaced it
+			if (oldPool != null)
+				oldPool.close();
 		}
+
+		if (this.pool == null)
+			return;
+
+		onConnected();
+	}
+
+	/**
+	 *
+	 * Called automatically after the first connection has been established
+	 */
+	protected void onConnected() {
 	}
 
 	/**
-	 * Attempts to connect using last known credentials. Fails gracefully if those are not provided
-	 * i.e. connect function was never called
+	 * The maximum amount of connections open at the same time. Queries beyond
+	 * this limit wait for a connection to be returned.
+	 *
+	 * Default: 10
+	 *
+	 * @return
 	 */
-	private final void connectUsingLastCredentials() {
-		if (lastCredentials != null)
-			connect(lastCredentials.url, lastCredentials.user, lastCredentials.password, lastCredentials.table);
+	protected int getMaxConnections() {
+		return 10;
 	}
 
 	/**
+	 * How long a connection may sit unused in the pool before it is closed
 	 *
-	 * Called automatically after the first connection has been established
+	 * Default: 5 minutes
+	 *
+	 * @return
 	 */
-	protected void onConnected() {
+	protected long getConnectionIdleTimeoutMillis() {
+		return 5 * 60 * 1000;
+	}
+
+	/**
+	 * How long to wait for a free connection when all {@link #getMaxConnections()}
+	 * are in use before the query fails
+	 *
+	 * Default: 10 seconds
+	 *
+	 * @return
+	 */
+	protected long getConnectionTimeoutMillis() {
+		return 10 * 1000;
+	}
+
+	/**
+	 * How many rows {@link #forEachRow(String, RowCallback, Object...)} and
+	 * {@link #stream(String, RowMapper, Object...)} read from the database at once
+	 *
+	 * If you connect using your own URL, add useCursorFetch=true to it,
+	 * otherwise the driver reads all rows at once regardless of this.
+	 *
+	 * Default: 500
+	 *
+	 * @return
+	 */
+	protected int getFetchSize() {
+		return 500;
 	}
 
 	// --------------------------------------------------------------------
@@ -148,18 +229,11 @@ public class SimpleDatabase {
 	// --------------------------------------------------------------------
 
 	/**
-	 * Attempts to close the connection, if not null
+	 * Attempts to close all pooled connections, if connected
 	 */
 	protected final void close() {
-		if (connection != null)
-			synchronized (connection) {
-				try {
-					connection.close();
-
-				} catch (final SQLException e) {
-					Common.error(e, "Error closing MySQL connection!");
-				}
-			}
+		if (pool != null)
+			pool.close();
 	}
 
 	// --------------------------------------------------------------------
@@ -176,29 +250,27 @@ public class SimpleDatabase {
 	protected final void update(String sql) {
 		checkEstablished();
 
-		synchronized (connection) {
-			if (!isConnected())
-				connectUsingLastCredentials();
-
-			sql = replaceVariables(sql);
+		sql = replaceVariables(sql);
 
-			Debugger.debug("mysql", "Updating MySQL with: " + sql);
+		Debugger.debug("mysql", "Updating MySQL with: " + sql);
 
-			try {
-				final Statement statement = connection.createStatement();
+		try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+			statement.executeUpdate(sql);
 
-				statement.executeUpdate(sql);
-				statement.close();
-
-			} catch (final SQLException e) {
-				Common.error(e, "Error on updating MySQL with: " + sql);
-			}
+		} catch (final SQLException e) {
+			Common.error(e, "Error on updating MySQL with: " + sql);
 		}
 	}
 
 	/**
 	 * Attempts to execute a new query
 	 *
+	 * All rows are read into memory and the connection is returned to the pool
+	 * right away, so you do not need to close anything here. The returned set
+	 * is disconnected, its getStatement() returns null. To walk large tables
+	 * use {@link #forEachRow(String, RowCallback, Object...)} or
+	 * {@link #stream(String, RowMapper, Object...)} which read rows as they go.
+	 *
 	 * Make sure you called connect() first otherwise an error will be thrown
 	 *
 	 * @param sql
@@ -207,31 +279,286 @@ public class SimpleDatabase {
 	protected final ResultSet query(String sql) {
 		checkEstablished();
 
-		synchronized (connection) {
-			if (!isConnected())
-				connectUsingLastCredentials();
+		sql = replaceVariables(sql);
 
-			sql = replaceVariables(sql);
+		Debugger.debug("mysql", "Querying MySQL with: " + sql);
 
-			Debugger.debug("mysql", "Querying MySQL with: " + sql);
+		try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
+			final CachedRowSet rows = ROW_SET_FACTORY.createCachedRowSet();
+			rows.populate(resultSet);
 
-			try {
-				final Statement statement = connection.createStatement();
-				final ResultSet resultSet = statement.executeQuery(sql);
+			return rows;
 
-				return resultSet;
+		} catch (final SQLException e) {
+			Common.error(e, "Error on querying MySQL with: " + sql);
+		}
 
-			} catch (final SQLException e) {
-				Common.error(e, "Error on querying MySQL with: " + sql);
+		return null;
+	}
+
+	/**
+	 * Attempts to execute a new update query with the given values bound
+	 * to the ? placeholders in the order they appear
+	 *
+	 * Supported values are null, strings, numbers, booleans, {@link UUID}s
+	 * and byte arrays, anything else is passed to the driver as it is.
+	 *
+	 * Make sure you called connect() first otherwise an error will be thrown
+	 *
+	 * @param sql
+	 * @param values
+	 */
+	protected final void update(String sql, Object... values) {
+		checkEstablished();
+
+		sql = replaceVariables(sql);
+
+		Debugger.debug("mysql", "Updating MySQL with: " + sql);
+
+		try (Connection connection = pool.getConnection(); PreparedStatement statement = connection.prepareStatement(sql)) {
+			bind(statement, values);
+
+			statement.executeUpdate();
+
+		} catch (final SQLException e) {
+			Common.error(e, "Error on updating MySQL with: " + sql);
+		}
+	}
+
+	/**
+	 * Attempts to execute a new query with the given values bound to the ?
+	 * placeholders in the order they appear, see {@link #update(String, Object...)}
+	 *
+	 * All rows are read into memory and the connection is returned to the pool
+	 * right away, so you do not need to close anything here. The returned set
+	 * is disconnected, its getStatement() returns null. To walk large tables
+	 * use {@link #forEachRow(String, RowCallback, Object...)} or
+	 * {@link #stream(String, RowMapper, Object...)} which read rows as they go.
+	 *
+	 * Make sure you called connect() first otherwise an error will be thrown
+	 *
+	 * @param sql
+	 * @param values
+	 * @return
+	 */
+	protected final ResultSet query(String sql, Object... values) {
+		checkEstablished();
+
+		sql = replaceVariables(sql);
+
+		Debugger.debug("mysql", "Querying MySQL with: " + sql);
+
+		try (Connection connection = pool.getConnection(); PreparedStatement statement = connection.prepareStatement(sql)) {
+			bind(statement, values);
+
+			try (ResultSet resultSet = statement.executeQuery()) {
+				final CachedRowSet rows = ROW_SET_FACTORY.createCachedRowSet();
+				rows.populate(resultSet);
+
+				return rows;
 			}
+
+		} catch (final SQLException e) {
+			Common.error(e, "Error on querying MySQL with: " + sql);
 		}
 
 		return null;
 	}
 
+	/**
+	 * Runs the query and calls the callback for each row as it is read, reading
+	 * {@link #getFetchSize()} rows at once so that large tables can be walked
+	 * without loading them into memory. The connection is closed when done.
+	 *
+	 * Values are bound to the ? placeholders, see {@link #update(String, Object...)}
+	 *
+	 * Make sure you called connect() first otherwise an error will be thrown
+	 *
+	 * @param sql
+	 * @param callback called for each row, do not move the cursor or close the result set
+	 * @param values
+	 * @return the amount of rows processed, or -1 if the query failed
+	 */
+	protected final int forEachRow(String sql, RowCallback callback, Object... values) {
+		checkEstablished();
+
+		sql = replaceVariables(sql);
+
+		Debugger.debug("mysql", "Iterating MySQL with: " + sql);
+
+		int processed = 0;
+
+		try (Connection connection = pool.getConnection(); PreparedStatement statement = prepareCursor(connection, sql, values); ResultSet resultSet = statement.executeQuery()) {
+			while (resultSet.next()) {
+				callback.accept(resultSet);
+
+				processed++;
+			}
+
+			return processed;
+
+		} catch (final SQLException e) {
+			Common.error(e, "Error on iterating MySQL with: " + sql, "Processed rows: " + processed);
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Runs {@link #forEachRow(String, RowCallback, Object...)} on an async thread,
+	 * calling the callback for each row there. When done, the finish callback
+	 * is run on the main thread with the amount of rows processed, or -1 if
+	 * the query failed.
+	 *
+	 * @param sql
+	 * @param callback called for each row on the async thread
+	 * @param onFinish called on the main thread when done, may be null
+	 * @param values
+	 */
+	protected final void forEachRowAsync(String sql, RowCallback callback, Consumer<Integer> onFinish, Object... values) {
+		checkEstablished();
+
+		Common.runLaterAsync(() -> {
+			final int processed = forEachRow(sql, callback, values);
+
+			if (onFinish != null)
+				Common.runLater(() -> onFinish.accept(processed));
+		});
+	}
+
+	/**
+	 * Runs the query and returns a lazy stream of rows converted by the mapper,
+	 * reading {@link #getFetchSize()} rows from the database at once.
+	 *
+	 * The stream holds a pooled connection until closed, always close
+	 * it when done, preferably using try-with-resources.
+	 *
+	 * Make sure you called connect() first otherwise an error will be thrown
+	 *
+	 * @param <R>
+	 * @param sql
+	 * @param mapper converts the current row, do not move the cursor or close the result set
+	 * @param values
+	 * @return
+	 * @throws SQLException if the query failed
+	 */
+	protected final <R> Stream<R> stream(String sql, RowMapper<R> mapper, Object... values) throws SQLException {
+		checkEstablished();
+
+		sql = replaceVariables(sql);
+
+		Debugger.debug("mysql", "Streaming MySQL with: " + sql);
+
+		final Connection connection = pool.getConnection();
+
+		try {
+			final PreparedStatement statement = prepareCursor(connection, sql, values);
+			final ResultSet resultSet = statement.executeQuery();
+			final String query = sql;
+
+			final Spliterator<R> rows = new Spliterators.AbstractSpliterator<R>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+
+				@Override
+				public boolean tryAdvance(Consumer<? super R> action) {
+					try {
+						if (!resultSet.next())
+							return false;
+
+						action.accept(mapper.map(resultSet));
+						return true;
+
+					} catch (final SQLException ex) {
+						throw new FoException(ex, "Error on streaming MySQL with: " + query);
+					}
+				}
+			};
+
+			return StreamSupport.stream(rows, false).onClose(() -> {
+				try {
+					resultSet.close();
+					statement.close();
+					connection.close();
+
+				} catch (final SQLException ex) {
+					Common.error(ex, "Error closing stream of MySQL query: " + query);
+				}
+			});
+
+		} catch (final SQLException | RuntimeException ex) {
+			connection.close();
+
+			throw ex;
+		}
+	}
+
+	/*
+	 * Prepare a forward-only statement reading getFetchSize() rows at once,
+	 * not cached since it uses the three argument prepareStatement
+	 */
+	private PreparedStatement prepareCursor(Connection connection, String sql, Object... values) throws SQLException {
+		final PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+
+		try {
+			statement.setFetchSize(getFetchSize());
+			bind(statement, values);
+
+			return statement;
+
+		} catch (final SQLException ex) {
+			statement.close();
+
+			throw ex;
+		}
+	}
+
+	/**
+	 * Binds the given values to the statement's ? placeholders in order,
+	 * using the setter matching each value's type
+	 *
+	 * @param statement
+	 * @param values
+	 * @throws SQLException
+	 */
+	protected static final void bind(PreparedStatement statement, Object... values) throws SQLException {
+		for (int i = 0; i < values.length; i++) {
+			final int index = i + 1;
+			final Object value = values[i];
+
+			if (value == null)
+				statement.setNull(index, Types.NULL);
+
+			else if (value instanceof String)
+				statement.setString(index, (String) value);
+
+			else if (value instanceof UUID)
+				statement.setString(index, value.toString());
+
+			else if (value instanceof Integer)
+				statement.setInt(index, (Integer) value);
+
+			else if (value instanceof Long)
+				statement.setLong(index, (Long) value);
+
+			else if (value instanceof Double)
+				statement.setDouble(index, (Double) value);
+
+			else if (value instanceof Boolean)
+				statement.setBoolean(index, (Boolean) value);
+
+			else if (value instanceof byte[])
+				statement.setBytes(index, (byte[]) value);
+
+			else
+				statement.setObject(index, value);
+		}
+	}
+
 	/**
 	 * Attempts to return a prepared statement
 	 *
+	 * The statement holds a pooled connection until it is closed, so always
+	 * close it when done, preferably using try-with-resources.
+	 *
 	 * Make sure you called connect() first otherwise an error will be thrown
 	 *
 	 * @param sql
@@ -241,36 +568,38 @@ public class SimpleDatabase {
 	protected final java.sql.PreparedStatement prepareStatement(String sql) throws SQLException {
 		checkEstablished();
 
-		synchronized (connection) {
-			if (!isConnected())
-				connectUsingLastCredentials();
+		sql = replaceVariables(sql);
 
-			sql = replaceVariables(sql);
+		Debugger.debug("mysql", "Preparing statement: " + sql);
 
-			Debugger.debug("mysql", "Preparing statement: " + sql);
+		return pool.prepareStatement(sql);
+	}
 
-			return connection.prepareStatement(sql);
-		}
+	/**
+	 * Checks out a connection from the pool, for example to run several
+	 * statements in one transaction. Close it to return it to the pool.
+	 *
+	 * Make sure you called connect() first otherwise an error will be thrown
+	 *
+	 * @return
+	 * @throws SQLException
+	 */
+	protected final Connection getConnection() throws SQLException {
+		checkEstablished();
+
+		return pool.getConnection();
 	}
 
 	/**
 	 * Is the connection established, open and valid?
-	 * Performs a blocking ping request to the database
+	 *
+	 * This does not ping the database, it returns whether the last
+	 * connection attempt or validation in the pool succeeded
 	 *
 	 * @return whether the connection driver was set
 	 */
 	protected final boolean isConnected() {
-		if (!isLoaded())
-			return false;
-
-		synchronized (connection) {
-			try {
-				return connection != null && !connection.isClosed() && connection.isValid(0);
-
-			} catch (final SQLException ex) {
-				return false;
-			}
-		}
+		return pool != null && !pool.isClosed() && pool.isHealthy();
 	}
 
 	// --------------------------------------------------------------------
@@ -292,7 +621,7 @@ public class SimpleDatabase {
 	 * Checks if the connect() function was called
 	 */
 	private final void checkEstablished() {
-		Valid.checkBoolean(isLoaded(), "Connection was never established");
+		Valid.checkBoolean(pool != null, "Connection was never established");
 	}
 
 	/**
@@ -300,8 +629,8 @@ public class SimpleDatabase {
 	 *
 	 * @return
 	 */
-	public final boolean isLoaded() {
-		return connection != null;
+	public boolean isLoaded() {
+		return pool != null;
 	}
 
 	// --------------------------------------------------------------------
@@ -325,12 +654,82 @@ public class SimpleDatabase {
 	 * @param sql
 	 * @return
 	 */
-	private final String replaceVariables(String sql) {
+	protected final String replaceVariables(String sql) {
+		int open = sql.indexOf('{');
+
+		if (open == -1)
+			return sql;
+
+		final StringBuilder builder = new StringBuilder(sql.length() + 16);
+		int last = 0;
+
+		while (open != -1) {
+			final int close = sql.indexOf('}', open + 1);
+
+			if (close == -1)
+				break;
+
+			final String name = sql.substring(open + 1, close);
+			String value = sqlVariables.get(name);
+
+			if (value == null && "table".equals(name))
+				value = getTable();
 
-		for (final Entry<String, String> entry : sqlVariables.entrySet())
-			sql = sql.replace("{" + entry.getKey() + "}", entry.getValue());
+			if (value != null) {
+				builder.append(sql, last, open).append(value);
 
-		return sql.replace("{table}", getTable());
+				last = close + 1;
+			}
+
+			open = sql.indexOf('{', value != null ? close + 1 : open + 1);
+		}
+
+		return builder.append(sql, last, sql.length()).toString();
+	}
+
+	/*
+	 * Look up the factory of in-memory row sets for the query methods
+	 */
+	private static RowSetFactory createRowSetFactory() {
+		try {
+			return RowSetProvider.newFactory();
+
+		} catch (final SQLException ex) {
+			throw new FoException(ex, "Failed to find a row set implementation for MySQL queries");
+		}
+	}
+
+	/**
+	 * Called for each row of {@link #forEachRow(String, RowCallback, Object...)}
+	 */
+	@FunctionalInterface
+	public interface RowCallback {
+
+		/**
+		 * Process the current row
+		 *
+		 * @param row
+		 * @throws SQLException
+		 */
+		void accept(ResultSet row) throws SQLException;
+	}
+
+	/**
+	 * Converts each row of {@link #stream(String, RowMapper, Object...)}
+	 *
+	 * @param <R>
+	 */
+	@FunctionalInterface
+	public interface RowMapper<R> {
+
+		/**
+		 * Convert the current row
+		 *
+		 * @param row
+		 * @return
+		 * @throws SQLException
+		 */
+		R map(ResultSet row) throws SQLException;
 	}
 
 	/**
@@ -1,20 +1,36 @@
 package org.mineacademy.fo.database;
 
-import java.sql.ResultSet;
-import java.sql.SQLException;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.lang.WordUtils;
 import org.bukkit.Bukkit;
 import org.mineacademy.fo.Common;
 import org.mineacademy.fo.MathUtil;
+import org.mineacademy.fo.Valid;
 import org.mineacademy.fo.collection.SerializedMap;
+import org.mineacademy.fo.collection.expiringmap.ExpiringMap;
+import org.mineacademy.fo.collection.expiringmap.NamedThreadFactory;
+import org.mineacademy.fo.database.FlatStorage.Row;
 import org.mineacademy.fo.debug.Debugger;
-import org.mineacademy.fo.debug.LagCatcher;
 import org.mineacademy.fo.settings.SimpleSettings;
 
-import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
 
 /**
  * Represents a simple database where values are flattened and stored
@@ -22,9 +38,9 @@ import lombok.NonNull;
  *
  * The table structure is as follows:
  *
- * UUID varchar(64) | Name text       | Data text      | Updated bigint
- * ------------------------------------------------------------
- * Player's uuid    | Last known name | {json data}    | Date of last save call
+ * UUID varchar(64) | Name text       | Data text      | BinaryData mediumblob | Updated bigint
+ * -------------------------------------------------------------------------------------
+ * Player's uuid    | Last known name | {json data}    | binary data           | Date of last save call
  *
  * We use JSON to flatten those values and provide convenience methods
  * {@link #onLoad(SerializedMap, Identifiable)} and {@link #onSave(Identifiable)}
@@ -33,6 +49,28 @@ import lombok.NonNull;
  * Also see {@link #getExpirationDays()}, by default we remove values not touched
  * within the last 90 days.
  *
+ * To store data in a compact binary form instead of JSON, see {@link #useBinaryData()}.
+ * Both forms are read regardless of this setting.
+ *
+ * Saving is write-behind: {@link #save(String, UUID, Object)} only takes a snapshot
+ * of your data and queues it, repeated saves of the same player are merged and
+ * written in batches on a background thread, see {@link #getSaveDelayMillis()}.
+ * Pending saves are flushed when your plugin is disabled, or call {@link #flush()}.
+ *
+ * Rows of players logging in are fetched during the async pre login event
+ * so that loading them on join does not query the database, see {@link #preloadOnLogin()}.
+ * To fetch many players at once use {@link #preload(Collection)}.
+ *
+ * Saves of data that did not change since it was last loaded or saved are
+ * skipped, see {@link #skipUnchangedSaves()}.
+ *
+ * Loading and saving is thread-safe. Calls for the same player wait for each
+ * other and run in order, calls for different players run in parallel.
+ *
+ * Rows are stored in MySQL when you use the connect() methods, or you can
+ * store them in a local file without any database server using
+ * {@link #connect(File)}, or anywhere else using {@link #connect(FlatStorage)}.
+ *
  * For a less-restricting solution see {@link SimpleDatabase} however you will
  * need to run own queries and implement own table structure that requires MySQL
  * command syntax knowledge.
@@ -42,10 +80,93 @@ import lombok.NonNull;
 public abstract class SimpleFlatDatabase<T> extends SimpleDatabase {
 
 	/**
-	 * An internal flag to prevent dead lock so that we do not call any
-	 * more queries within the {@link #load(UUID, Object)} or {@link #save(UUID, Object)} methods
+	 * How long preloaded data is kept if it is never loaded, for example
+	 * when the player is kicked before joining
+	 */
+	private static final long PRELOAD_EXPIRATION_MS = 60_000;
+
+	/**
+	 * How long we remember the hash of stored data. Unchanged data is written
+	 * again after this time so that its last save date stays recent and it
+	 * does not expire, see {@link #getExpirationDays()}.
+	 */
+	private static final long STORED_HASH_EXPIRATION_HOURS = 12;
+
+	/**
+	 * All databases that have connected, so that we can flush them when the plugin is disabled
+	 */
+	private static final Set<SimpleFlatDatabase<?>> connectedDatabases = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+	/**
+	 * Locks held while loading or saving a player, by unique id, so that
+	 * operations on the same player run one after another. Removed when unused.
+	 */
+	private final Map<UUID, KeyLock> keyLocks = new HashMap<>();
+
+	/**
+	 * Where rows are stored, null if not connected
+	 */
+	private volatile FlatStorage storage;
+
+	/**
+	 * Completed once the storage being opened in the background is opened
+	 * or failed to open, null if not opening
+	 */
+	private volatile CompletableFuture<Void> opening;
+
+	/**
+	 * Saves waiting to be written, by unique id, only the latest save per player is kept
+	 */
+	private final Map<UUID, Row> pendingSaves = new LinkedHashMap<>();
+
+	/**
+	 * Saves currently being written by {@link #flush()}, still used when loading
+	 */
+	private final Map<UUID, Row> flushingSaves = new LinkedHashMap<>();
+
+	/**
+	 * Ensures only one flush runs at the time
+	 */
+	private final Object flushLock = new Object();
+
+	/**
+	 * Data fetched ahead of time waiting to be loaded, by unique id.
+	 * Saving a player removes his entry since it would be outdated.
+	 */
+	private final Map<UUID, Preload> preloads = new ConcurrentHashMap<>();
+
+	/**
+	 * Hashes of the data last loaded or queued for saving, by unique id,
+	 * used to skip saving data that did not change
+	 */
+	private final Map<UUID, Long> storedHashes = ExpiringMap.builder()
+			.expiration(STORED_HASH_EXPIRATION_HOURS, TimeUnit.HOURS)
+			.build();
+
+	/**
+	 * How many saves were queued and how many were skipped because the data did not change
+	 */
+	private final AtomicLong writtenSaves = new AtomicLong(), skippedSaves = new AtomicLong();
+
+	/**
+	 * The background thread writing pending saves and preloading, created when first needed
+	 */
+	private ScheduledThreadPoolExecutor executor;
+
+	/**
+	 * Whether a flush is already scheduled on {@link #executor}
+	 */
+	private boolean flushScheduled = false;
+
+	/**
+	 * Set by {@link #shutdown()} so that no background thread is started again until connected
 	 */
-	private boolean isQuerying = false;
+	private boolean shutdown = false;
+
+	/**
+	 * Whether the storage failed to open the last time we connected
+	 */
+	private volatile boolean openFailed = false;
 
 	/**
 	 * Creates the table if it does not exist
@@ -54,20 +175,134 @@ public abstract class SimpleFlatDatabase<T> extends SimpleDatabase {
 	 */
 	@Override
 	protected final void onConnected() {
+		connectStorage(new MySQLFlatStorage(this));
+	}
+
+	/**
+	 * Stores rows in the given file on this machine instead of MySQL,
+	 * see {@link FileFlatStorage}
+	 *
+	 * @param file
+	 */
+	public final void connect(File file) {
+		connect(new FileFlatStorage(file));
+	}
+
+	/**
+	 * Stores rows in the given storage instead of MySQL
+	 *
+	 * @param storage
+	 */
+	public final void connect(FlatStorage storage) {
+		connectStorage(storage);
+	}
+
+	/*
+	 * Open and start using the storage, purge old rows and call hooks.
+	 *
+	 * Opening may migrate the table and wait for other servers doing the same,
+	 * so on the main thread we open in the background. Saves made meanwhile are
+	 * queued and written once opened, loads wait for it.
+	 */
+	private void connectStorage(FlatStorage storage) {
+		awaitOpening();
+
+		final FlatStorage oldStorage = this.storage;
+
+		if (oldStorage != null && oldStorage != storage) {
+			flush();
+
+			oldStorage.close();
+			this.storage = null;
+		}
+
+		storedHashes.clear();
+
+		synchronized (this) {
+			shutdown = false;
+		}
+
+		if (Bukkit.isPrimaryThread()) {
+			final CompletableFuture<Void> opening = new CompletableFuture<>();
+
+			this.opening = opening;
+
+			getExecutor().execute(() -> {
+				try {
+					if (openStorage(storage))
+						Common.runLater(this::onConnectFinish);
+
+				} finally {
+					this.opening = null;
+
+					opening.complete(null);
+				}
+			});
+
+		} else if (openStorage(storage))
+			onConnectFinish();
+	}
+
+	/*
+	 * Open the storage and start using it, return false if it failed
+	 */
+	private boolean openStorage(FlatStorage storage) {
+
+		// First, see if the table or file exists, create it if not
+		try {
+			storage.open();
+
+		} catch (final Throwable t) {
+			Common.error(t, "Failed to open " + storage.getClass().getSimpleName() + " for " + getClass().getSimpleName());
+
+			openFailed = true;
+			warnUnwritten();
 
-		// First, see if the database exists, create it if not
-		update("CREATE TABLE IF NOT EXISTS {table}(UUID varchar(64), Name text, Data text, Updated bigint)");
+			return false;
+		}
+
+		this.storage = storage;
+		openFailed = false;
+
+		// Remove entries that have not been updated in the last X days, on its own thread so that saves are not delayed
+		new NamedThreadFactory(getClass().getSimpleName() + "-Purge-%d").newThread(() -> removeOldEntries(storage)).start();
+
+		connectedDatabases.add(this);
+
+		// Write saves queued while opening
+		scheduleFlush();
 
-		// Remove entries that have not been updated in the last X days
-		removeOldEntries();
+		return true;
+	}
+
+	/*
+	 * Wait until the storage opening in the background, if any, is opened or failed to open
+	 */
+	private void awaitOpening() {
+		final CompletableFuture<Void> opening = this.opening;
+
+		if (opening != null)
+			opening.join();
+	}
 
-		// Call any hooks
-		onConnectFinish();
+	/**
+	 * Return true if rows can be loaded and saved, i.e. we are connected
+	 * to MySQL or any other storage
+	 *
+	 * @return
+	 */
+	@Override
+	public final boolean isLoaded() {
+		return storage != null;
 	}
 
 	/**
 	 * You can override this to run code after the connection was made and
-	 * the table created as well as purged ({@link #removeOldEntries()})
+	 * the table created. Old entries are purged in the background afterwards,
+	 * see {@link #getExpirationDays()}.
+	 *
+	 * When connecting on the main thread the table is created in the background
+	 * and this is called on the main thread once done.
 	 */
 	protected void onConnectFinish() {
 	}
@@ -76,10 +311,15 @@ public abstract class SimpleFlatDatabase<T> extends SimpleDatabase {
 	 * Remove entries that have not been updated (called {@link #save(Identifiable)} method) for the
 	 * last given X amount of days
 	 */
-	private void removeOldEntries() {
+	private void removeOldEntries(FlatStorage storage) {
 		final long threshold = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(getExpirationDays());
 
-		update("DELETE FROM {table} WHERE Updated < " + threshold + "");
+		try {
+			storage.removeOlderThan(threshold);
+
+		} catch (final Throwable t) {
+			Common.error(t, "Failed to remove old entries from " + getClass().getSimpleName());
+		}
 	}
 
 	/**
@@ -95,6 +335,85 @@ public abstract class SimpleFlatDatabase<T> extends SimpleDatabase {
 		return 90;
 	}
 
+	/**
+	 * How long saves are collected before they are written to the database
+	 * in a batch. Saving the same player again within this time only writes
+	 * the latest data.
+	 *
+	 * Default: 2 seconds
+	 *
+	 * @return
+	 */
+	protected long getSaveDelayMillis() {
+		return 2000;
+	}
+
+	/**
+	 * The maximum amount of players waiting to be saved. When exceeded,
+	 * the thread calling save writes all pending saves immediately.
+	 *
+	 * Default: 1000
+	 *
+	 * @return
+	 */
+	protected int getMaxPendingSaves() {
+		return 1000;
+	}
+
+	/**
+	 * Should we store data in a compact binary form instead of JSON?
+	 * It is smaller and faster to read and write, but not human readable.
+	 *
+	 * Rows already stored as JSON are still read and are converted the next
+	 * time they are saved. Turning this off again converts them back to JSON.
+	 *
+	 * Default: false
+	 *
+	 * @return
+	 */
+	protected boolean useBinaryData() {
+		return false;
+	}
+
+	/**
+	 * When using binary data, payloads larger than this amount of bytes
+	 * are compressed, -1 to never compress
+	 *
+	 * Default: 1024
+	 *
+	 * @return
+	 */
+	protected int getCompressionThreshold() {
+		return 1024;
+	}
+
+	/**
+	 * Should we skip saving players whose data did not change since
+	 * they were last loaded or saved? This saves many writes on autosaves.
+	 *
+	 * We compare a hash of the data, see {@link #getSkippedSaves()}
+	 * for how many saves were skipped.
+	 *
+	 * Default: true
+	 *
+	 * @return
+	 */
+	protected boolean skipUnchangedSaves() {
+		return true;
+	}
+
+	/**
+	 * Should we fetch the player's row when he logs in, on the async login thread,
+	 * so that {@link #load(UUID, Object)} on join does not need to query?
+	 *
+	 * Default: true
+	 *
+	 * @return
+	 */
+	protected boolean preloadOnLogin() {
+		return true;
+	}
+
 	/**
 	 * Load the data for the given unique ID and his cache
 	 *
@@ -102,28 +421,47 @@ public abstract class SimpleFlatDatabase<T> extends SimpleDatabase {
 	 * @param cache
 	 */
 	public final void load(UUID uuid, T cache) {
-		if (!isLoaded() || isQuerying)
+		awaitOpening();
+
+		if (!isLoaded())
 			return;
 
-		try {
-			LagCatcher.start("mysql");
-			isQuerying = true;
+		final long start = System.nanoTime();
+		final KeyLock lock = lock(uuid);
 
+		try {
 			Debugger.debug("mysql", "---------------- MySQL - Loading data for " + uuid);
 
-			final ResultSet resultSet = query("SELECT * FROM {table} WHERE UUID='" + uuid + "'");
-			final String dataRaw = resultSet.next() ? resultSet.getString("Data") : "{}";
-			Debugger.debug("mysql", "JSON: " + dataRaw);
+			// Use data not yet written to the database if any
+			final Row pending = getPendingSave(uuid);
+			final Preload preload = preloads.remove(uuid);
+			final SerializedMap data;
+
+			if (pending != null)
+				data = decode(pending.getData());
+
+			else if (preload != null && !preload.future.isCompletedExceptionally()) {
+				Debugger.debug("mysql", "Using preloaded data");
+
+				// Wait if the preload query is still running rather than running another one
+				data = preload.future.join();
+
+				storedHashes.put(uuid, preload.hash);
+
+			} else {
+				final byte[] dataRaw = storage.fetch(Collections.singletonList(uuid)).get(uuid);
+				Debugger.debug("mysql", "Fetched " + (dataRaw == null ? "no row" : dataRaw.length + " bytes"));
+
+				data = decode(dataRaw);
+
+				storedHashes.put(uuid, hash(dataRaw));
+			}
 
-			final SerializedMap data = SerializedMap.fromJson(dataRaw);
 			Debugger.debug("mysql", "Deserialized data: " + data);
 
 			// Call the user specified load method
 			onLoad(data, cache);
 
-			// Close connection at the end
-			resultSet.close();
-
 		} catch (final Throwable t) {
 			Common.error(t,
 					"Failed to load data from MySQL!",
@@ -131,9 +469,9 @@ public abstract class SimpleFlatDatabase<T> extends SimpleDatabase {
 					"Error: %error");
 
 		} finally {
-			isQuerying = false;
+			unlock(uuid, lock);
 
-			logPerformance("loading");
+			logPerformance("loading", start);
 		}
 	}
 
@@ -150,39 +488,62 @@ public abstract class SimpleFlatDatabase<T> extends SimpleDatabase {
 	 *
 	 * If the onSave returns empty data we delete the row
 	 *
+	 * The data is only queued here and written later on a background thread,
+	 * see {@link #getSaveDelayMillis()}
+	 *
 	 * @param name last known name - players may change those
 	 * @param uuid
 	 * @param cache
 	 */
 	public final void save(String name, UUID uuid, T cache) {
-		if (!isLoaded() || isQuerying)
+		if (!isLoaded() && opening == null) {
+			if (isShutdown() || openFailed)
+				Common.log("Cannot save data of " + (name != null ? name : uuid) + " since " + getClass().getSimpleName() + (isShutdown() ? " has been shut down" : " failed to connect") + ", the changes are lost!");
+
 			return;
+		}
+
+		final long start = System.nanoTime();
+		final KeyLock lock = lock(uuid);
+		boolean flushNow = false;
 
 		try {
-			LagCatcher.start("mysql");
-			isQuerying = true;
 
 			// Save using the user configured save method
 			final SerializedMap data = onSave(cache);
+			final byte[] encoded = data == null || data.isEmpty() ? null : encode(data);
 
 			Debugger.debug("mysql", "---------------- MySQL - Saving data for " + uuid);
 			Debugger.debug("mysql", "Raw data: " + data);
-			Debugger.debug("mysql", "JSON: " + (data == null ? "null" : data.toJson()));
+			Debugger.debug("mysql", "Encoded: " + (encoded == null ? "null, row will be removed" : encoded.length + " bytes"));
 
-			// Remove data if empty
-			if (data == null || data.isEmpty()) {
-				update("DELETE FROM {table} WHERE UUID= '" + uuid + "';");
+			final long hash = hash(encoded);
 
-				if (Debugger.isDebugged("mysql"))
-					Debugger.debug("mysql", "Data was empty, row has been removed.");
+			if (skipUnchangedSaves() && Long.valueOf(hash).equals(storedHashes.get(uuid))) {
+				Debugger.debug("mysql", "Data did not change, skipping");
 
-			} else {
-				if (isStored(uuid))
-					update("UPDATE {table} SET Data='" + data.toJson() + "', Updated='" + System.currentTimeMillis() + "' WHERE UUID='" + uuid + "';");
-				else
-					update("INSERT INTO {table}(UUID, Name, Data, Updated) VALUES ('" + uuid + "', '" + name + "', '" + data.toJson() + "', '" + System.currentTimeMillis() + "');");
+				skippedSaves.incrementAndGet();
+				return;
+			}
+
+			storedHashes.put(uuid, hash);
+			writtenSaves.incrementAndGet();
+
+			// Preloaded data is now outdated
+			preloads.remove(uuid);
+
+			synchronized (pendingSaves) {
+
+				// Remove first so that the player moves to the end of the queue
+				pendingSaves.remove(uuid);
+				pendingSaves.put(uuid, new Row(uuid, name, encoded, System.currentTimeMillis()));
+
+				flushNow = pendingSaves.size() >= getMaxPendingSaves();
 			}
 
+			if (!flushNow)
+				scheduleFlush();
+
 		} catch (final Throwable ex) {
 			Common.error(ex,
 					"Failed to save data to MySQL!",
@@ -190,44 +551,400 @@ public abstract class SimpleFlatDatabase<T> extends SimpleDatabase {
 					"Error: %error");
 
 		} finally {
-			isQuerying = false;
+			unlock(uuid, lock);
+
+			logPerformance("saving", start);
+		}
+
+		if (flushNow)
+			flush();
+	}
+
+	/*
+	 * Acquire the lock for the given player, waiting if another thread holds it
+	 */
+	private KeyLock lock(UUID uuid) {
+		final KeyLock lock;
 
-			logPerformance("saving");
+		synchronized (keyLocks) {
+			lock = keyLocks.computeIfAbsent(uuid, key -> new KeyLock());
+			lock.holders++;
+		}
+
+		lock.lock.lock();
+		return lock;
+	}
+
+	/*
+	 * Release the lock for the given player, forgetting it when nobody else waits for it
+	 */
+	private void unlock(UUID uuid, KeyLock lock) {
+		lock.lock.unlock();
+
+		synchronized (keyLocks) {
+			if (--lock.holders == 0)
+				keyLocks.remove(uuid);
 		}
 	}
 
 	/**
-	 * Utility method to finish LagCatcher mysql measure and log
-	 * if there was some lag, or if we detected mysql being run
-	 * from the main thread.
+	 * Fetches data of all given players in the background using as few queries
+	 * as possible and keeps it ready so that calling {@link #load(UUID, Object)}
+	 * for them later does not query the database.
 	 *
-	 * @param operation
+	 * The returned futures complete with each player's data, or an empty map
+	 * if the player is not stored, once fetched. They are completed on the
+	 * background thread.
+	 *
+	 * @param uuids
+	 * @return
 	 */
-	private void logPerformance(String operation) {
-		final double took = LagCatcher.endTook("mysql");
-		final boolean isMainThread = Bukkit.isPrimaryThread();
+	public final Map<UUID, CompletableFuture<SerializedMap>> preload(Collection<UUID> uuids) {
+		Valid.checkBoolean(isLoaded() || opening != null, "Cannot preload data before connecting to the database");
+
+		final List<Preload> batch = startPreload(uuids);
+		final Map<UUID, CompletableFuture<SerializedMap>> futures = new LinkedHashMap<>();
 
-		LagCatcher.end("mysql", isMainThread ? 10 : MathUtil.atLeast(200, SimpleSettings.LAG_THRESHOLD_MILLIS),
-				WordUtils.capitalize(operation) + " data to MySQL took {time} ms" + (took > 10 && isMainThread ? " - To prevent slowing the server, " + operation + " can be made async (carefully)" : ""));
+		for (final Preload preload : batch)
+			futures.put(preload.uuid, preload.future);
+
+		getExecutor().execute(() -> fetchPreloads(batch));
+
+		return futures;
 	}
 
 	/**
-	 * Checks if the given unique id is stored in the database
+	 * Preloads the player's data in every connected database that has {@link #preloadOnLogin()}
+	 * enabled. Called automatically on the async login thread.
 	 *
 	 * @param uuid
+	 */
+	public static void preloadForLogin(UUID uuid) {
+		for (final SimpleFlatDatabase<?> database : connectedDatabases)
+			if (database.isLoaded() && database.preloadOnLogin())
+				database.fetchPreloads(database.startPreload(Collections.singletonList(uuid)));
+	}
+
+	/*
+	 * Register unfinished preloads for the given players, removing expired ones
+	 */
+	private List<Preload> startPreload(Collection<UUID> uuids) {
+		final long now = System.currentTimeMillis();
+		final List<Preload> batch = new ArrayList<>();
+
+		preloads.values().removeIf(preload -> now - preload.created > PRELOAD_EXPIRATION_MS);
+
+		for (final UUID uuid : uuids) {
+			final Preload preload = new Preload(uuid, now);
+
+			preloads.put(uuid, preload);
+			batch.add(preload);
+		}
+
+		return batch;
+	}
+
+	/*
+	 * Fetch rows for the given preloads, the storage uses as few queries as possible
+	 */
+	private void fetchPreloads(List<Preload> batch) {
+		final List<UUID> uuids = new ArrayList<>();
+
+		for (final Preload preload : batch)
+			uuids.add(preload.uuid);
+
+		try {
+			final Map<UUID, byte[]> rows = storage.fetch(uuids);
+
+			for (final Preload preload : batch) {
+				final Row pending = getPendingSave(preload.uuid);
+				final byte[] data = pending != null ? pending.getData() : rows.get(preload.uuid);
+
+				preload.hash = hash(data);
+				preload.future.complete(decode(data));
+			}
+
+			Debugger.debug("mysql", "Preloaded data of " + batch.size() + " player(s)");
+
+		} catch (final Throwable t) {
+			Common.error(t,
+					"Failed to preload data of " + batch.size() + " player(s)!",
+					"Error: %error");
+
+			for (final Preload preload : batch) {
+				preloads.remove(preload.uuid, preload);
+
+				preload.future.completeExceptionally(t);
+			}
+		}
+	}
+
+	/**
+	 * Writes all pending saves to the database right now on this thread.
+	 *
+	 * This is called automatically in the background and when your plugin
+	 * is disabled, you only need to call it if you want to make sure the
+	 * data is stored at a certain point.
+	 */
+	public final void flush() {
+		final FlatStorage storage = this.storage;
+
+		if (storage == null) {
+			if (opening == null)
+				warnUnwritten();
+
+			return;
+		}
+
+		synchronized (flushLock) {
+			final List<Row> batch;
+
+			synchronized (pendingSaves) {
+				if (pendingSaves.isEmpty())
+					return;
+
+				batch = new ArrayList<>(pendingSaves.values());
+
+				flushingSaves.putAll(pendingSaves);
+				pendingSaves.clear();
+			}
+
+			final long start = System.nanoTime();
+
+			try {
+				storage.write(batch);
+
+				Debugger.debug("mysql", "Flushed " + batch.size() + " save(s) in " + MathUtil.formatTwoDigits((System.nanoTime() - start) / 1_000_000D) + " ms");
+
+			} catch (final Throwable t) {
+
+				// Nothing would retry after shutdown, at least tell who lost their changes
+				if (isShutdown()) {
+					Common.error(t,
+							"Failed to save data of " + batch.size() + " player(s) on shutdown, their changes are lost!",
+							"Players: " + joinNames(batch),
+							"Error: %error");
+
+					return;
+				}
+
+				Common.error(t,
+						"Failed to save data of " + batch.size() + " player(s), will retry later!",
+						"Error: %error");
+
+				// Put back what was not saved again in the meanwhile
+				synchronized (pendingSaves) {
+					for (final Row save : batch)
+						pendingSaves.putIfAbsent(save.getUuid(), save);
+				}
+
+				scheduleFlush();
+
+			} finally {
+				synchronized (pendingSaves) {
+					flushingSaves.clear();
+				}
+			}
+		}
+	}
+
+	/*
+	 * Tell who has saves that cannot be written since the storage is not open,
+	 * after shutdown nothing will write them so they are dropped
+	 */
+	private void warnUnwritten() {
+		final List<Row> unwritten;
+
+		synchronized (pendingSaves) {
+			if (pendingSaves.isEmpty())
+				return;
+
+			unwritten = new ArrayList<>(pendingSaves.values());
+
+			if (isShutdown())
+				pendingSaves.clear();
+		}
+
+		Common.log("Cannot save data of " + unwritten.size() + " player(s) since " + getClass().getSimpleName() + " is not connected, "
+				+ (isShutdown() ? "their changes are lost!" : "they will be saved once connected."),
+				"Players: " + joinNames(unwritten));
+	}
+
+	/*
+	 * Return names of the players of the given saves, or their unique ids if unknown
+	 */
+	private static String joinNames(Collection<Row> saves) {
+		final List<String> players = new ArrayList<>();
+
+		for (final Row save : saves)
+			players.add(save.getName() != null ? save.getName() : save.getUuid().toString());
+
+		return String.join(", ", players);
+	}
+
+	/*
+	 * Return the save not yet written to the database for the given player, or null
+	 */
+	private Row getPendingSave(UUID uuid) {
+		synchronized (pendingSaves) {
+			final Row pending = pendingSaves.get(uuid);
+
+			return pending != null ? pending : flushingSaves.get(uuid);
+		}
+	}
+
+	/*
+	 * Encode the data to binary or JSON bytes, see useBinaryData()
+	 */
+	private byte[] encode(SerializedMap data) {
+		return useBinaryData() ? data.toBinary(getCompressionThreshold()) : data.toJson().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/*
+	 * Decode data in either format, returning an empty map for null
+	 */
+	private static SerializedMap decode(byte[] data) {
+		if (data == null)
+			return new SerializedMap();
+
+		return SerializedMap.isBinary(data) ? SerializedMap.fromBinary(data) : SerializedMap.fromJson(new String(data, StandardCharsets.UTF_8));
+	}
+
+	/*
+	 * Return a 64-bit FNV-1a hash of the data, 0 for null
+	 */
+	private static long hash(byte[] data) {
+		if (data == null)
+			return 0;
+
+		long hash = 0xcbf29ce484222325L;
+
+		for (final byte b : data) {
+			hash ^= b & 0xFF;
+			hash *= 0x100000001b3L;
+		}
+
+		return hash;
+	}
+
+	/**
+	 * Return how many saves were queued for writing since the plugin started
+	 *
 	 * @return
-	 * @throws SQLException
 	 */
-	private boolean isStored(@NonNull UUID uuid) throws SQLException {
-		final ResultSet resultSet = query("SELECT * FROM {table} WHERE UUID= '" + uuid.toString() + "'");
+	public final long getWrittenSaves() {
+		return writtenSaves.get();
+	}
 
-		if (resultSet == null)
-			return false;
+	/**
+	 * Return how many saves were skipped since the plugin started
+	 * because the data did not change, see {@link #skipUnchangedSaves()}
+	 *
+	 * @return
+	 */
+	public final long getSkippedSaves() {
+		return skippedSaves.get();
+	}
 
-		if (resultSet.next())
-			return resultSet.getString("UUID") != null;
+	/*
+	 * Schedule a flush after the save delay on the background thread
+	 */
+	private synchronized void scheduleFlush() {
+		if (flushScheduled || shutdown)
+			return;
 
-		return false;
+		flushScheduled = true;
+
+		getExecutor().schedule(() -> {
+			synchronized (this) {
+				flushScheduled = false;
+			}
+
+			flush();
+		}, getSaveDelayMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	/*
+	 * Return true if shutdown() was called and we did not connect again since
+	 */
+	private synchronized boolean isShutdown() {
+		return shutdown;
+	}
+
+	/*
+	 * Return the background thread, creating it if needed
+	 */
+	private synchronized ScheduledThreadPoolExecutor getExecutor() {
+		Valid.checkBoolean(!shutdown, getClass().getSimpleName() + " has been shut down, connect it again first");
+
+		if (executor == null) {
+			executor = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory(getClass().getSimpleName() + "-Worker-%d"));
+			executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+		}
+
+		return executor;
+	}
+
+	/**
+	 * Writes all pending saves, stops the background thread and closes
+	 * the storage, called automatically when your plugin is disabled
+	 */
+	public final void shutdown() {
+		awaitOpening();
+
+		synchronized (this) {
+			if (executor != null)
+				executor.shutdown();
+
+			executor = null;
+			flushScheduled = false;
+			shutdown = true;
+		}
+
+		flush();
+		preloads.clear();
+		storedHashes.clear();
+		connectedDatabases.remove(this);
+
+		if (writtenSaves.get() + skippedSaves.get() > 0)
+			Debugger.debug("mysql", getClass().getSimpleName() + " saved " + writtenSaves.get() + " time(s), skipped " + skippedSaves.get() + " unchanged save(s)");
+
+		if (storage != null) {
+			storage.close();
+
+			storage = null;
+		}
+	}
+
+	/**
+	 * Writes pending saves of all connected flat databases and stops their
+	 * background threads. Called automatically when the plugin is disabled.
+	 */
+	public static void shutdownAll() {
+		for (final SimpleFlatDatabase<?> database : connectedDatabases)
+			database.shutdown();
+	}
+
+	/**
+	 * Utility method to log if loading or saving took long, or if
+	 * we detected mysql being run from the main thread.
+	 *
+	 * We measure the time ourselves since {@link org.mineacademy.fo.debug.LagCatcher}
+	 * can only measure one section at the time, and we may run on many threads.
+	 *
+	 * @param operation
+	 * @param startNanos
+	 */
+	private void logPerformance(String operation, long startNanos) {
+		if (SimpleSettings.LAG_THRESHOLD_MILLIS == -1)
+			return;
+
+		final double took = (System.nanoTime() - startNanos) / 1_000_000D;
+		final boolean isMainThread = Bukkit.isPrimaryThread();
+
+		if (took > (isMainThread ? 10 : MathUtil.atLeast(200, SimpleSettings.LAG_THRESHOLD_MILLIS)))
+			Common.logNoPrefix("[{plugin_name} {plugin_version}] " + WordUtils.capitalize(operation) + " data to MySQL took " + MathUtil.formatTwoDigits(took) + " ms"
+					+ (isMainThread ? " - To prevent slowing the server, " + operation + " can be made async (carefully)" : ""));
 	}
 
 	/**
@@ -238,4 +955,47 @@ public abstract class SimpleFlatDatabase<T> extends SimpleDatabase {
 	 * @return
 	 */
 	protected abstract SerializedMap onSave(T data);
+
+	/**
+	 * Data of a player being fetched or fetched ahead of time
+	 */
+	@RequiredArgsConstructor
+	private static final class Preload {
+
+		/**
+		 * The player's unique id
+		 */
+		private final UUID uuid;
+
+		/**
+		 * When the preload was started
+		 */
+		private final long created;
+
+		/**
+		 * Completed with the data once fetched
+		 */
+		private final CompletableFuture<SerializedMap> future = new CompletableFuture<>();
+
+		/**
+		 * Hash of the fetched data, set before the future completes
+		 */
+		private volatile long hash;
+	}
+
+	/**
+	 * A lock for one player with the amount of threads holding or waiting for it
+	 */
+	private static final class KeyLock {
+
+		/**
+		 * The lock, reentrant so that onLoad and onSave may call load and save again
+		 */
+		private final ReentrantLock lock = new ReentrantLock();
+
+		/**
+		 * How many threads hold or wait for this lock, guarded by keyLocks
+		 */
+		private int holders = 0;
+	}
 }
@@ -1,6 +1,8 @@
 package org.mineacademy.fo.model;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 
 import org.apache.commons.lang.StringUtils;
@@ -143,20 +145,28 @@ public final class BoxedMessage {
 	}
 
 	private void send(String message) {
-		message = centerMessage0(message);
+		for (final String line : centerMessage0(message))
+			if (recipients == null)
+				broadcast0(line);
 
-		if (recipients == null)
-			broadcast0(message);
-
-		else
-			tell0(message);
+			else
+				tell0(line);
 	}
 
-	private String centerMessage0(String message) {
-		if (message.startsWith("<center>"))
-			return ChatUtil.center(message.replaceFirst("\\<center\\>(\\s|)", ""));
+	/*
+	 * Center the message if it starts with <center>, wrapping it first
+	 * when it does not fit into one chat line
+	 */
+	private List<String> centerMessage0(String message) {
+		if (!message.startsWith("<center>"))
+			return Arrays.asList(message);
+
+		final List<String> lines = new ArrayList<>();
+
+		for (final String line : ChatUtil.wrap(message.replaceFirst("\\<center\\>(\\s|)", ""), ChatUtil.CENTER_PX * 2))
+			lines.add(ChatUtil.center(line));
 
-		return message;
+		return lines;
 	}
 
 	private void broadcast0(String message) {
@@ -11,10 +11,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.apache.commons.lang.StringUtils;
 import org.bukkit.Bukkit;
@@ -1786,14 +1786,17 @@ class VaultHook {
 
 class PlaceholderAPIHook {
 
-	private final Set<PAPIPlaceholder> placeholders = new HashSet<>();
+	/**
+	 * Our placeholders by their lower cased variable
+	 */
+	private final Map<String, PAPIPlaceholder> placeholders = new ConcurrentHashMap<>();
 
 	PlaceholderAPIHook() {
 		new VariablesInjector().register();
 	}
 
 	final void addPlaceholder(PAPIPlaceholder placeholder, Function<Player, String> replacer) {
-		placeholders.add(placeholder);
+		placeholders.put(placeholder.getVariable().toLowerCase(), placeholder);
 
 		if (replacer != null)
 			PlaceholderAPI.registerPlaceholderHook(SimplePlugin.getNamed().toLowerCase(), new PlaceholderHook() {
@@ -1831,25 +1834,34 @@ class PlaceholderAPIHook {
 
 		final Matcher matcher = Variables.BRACKET_PLACEHOLDER_PATTERN.matcher(text);
 
-		while (matcher.find()) {
+		if (!matcher.find())
+			return text;
+
+		final StringBuilder builder = new StringBuilder(text.length() + 16);
+		int lastEnd = 0;
+
+		do {
 			final String format = matcher.group(1);
 			final int index = format.indexOf("_");
 
 			if (index <= 0 || index >= format.length())
 				continue;
 
-			final String identifier = format.substring(0, index).toLowerCase();
-			final String params = format.substring(index + 1);
+			final PlaceholderHook hook = hooks.get(format.substring(0, index).toLowerCase());
+
+			if (hook != null) {
+				final String value = hook.onRequest(player, format.substring(index + 1));
 
-			if (hooks.containsKey(identifier)) {
-				final String value = hooks.get(identifier).onRequest(player, params);
+				if (value != null) {
+					builder.append(text, lastEnd, matcher.start()).append(Common.colorize(value));
 
-				if (value != null)
-					text = text.replaceAll(Pattern.quote(matcher.group()), Matcher.quoteReplacement(Common.colorize(value)));
+					lastEnd = matcher.end();
+				}
 			}
-		}
 
-		return text;
+		} while (matcher.find());
+
+		return lastEnd == 0 ? text : builder.append(text, lastEnd, text.length()).toString();
 	}
 
 	final String replaceRelationPlaceholders(Player one, Player two, String msg) {
@@ -1876,29 +1888,35 @@ class PlaceholderAPIHook {
 
 		final Matcher m = Variables.BRACKET_REL_PLACEHOLDER_PATTERN.matcher(text);
 
-		while (m.find()) {
+		if (!m.find())
+			return text;
+
+		final StringBuilder builder = new StringBuilder(text.length() + 16);
+		int lastEnd = 0;
+
+		do {
 			final String format = m.group(2);
 			final int index = format.indexOf("_");
 
 			if (index <= 0 || index >= format.length())
 				continue;
 
-			final String identifier = format.substring(0, index).toLowerCase();
-			final String params = format.substring(index + 1);
+			final PlaceholderHook hook = hooks.get(format.substring(0, index).toLowerCase());
+
+			if (!(hook instanceof Relational))
+				continue;
 
-			if (hooks.containsKey(identifier)) {
-				if (!(hooks.get(identifier) instanceof Relational))
-					continue;
+			final String value = one != null && two != null ? ((Relational) hook).onPlaceholderRequest(one, two, format.substring(index + 1)) : "";
 
-				final Relational rel = (Relational) hooks.get(identifier);
-				final String value = one != null && two != null ? rel.onPlaceholderRequest(one, two, params) : "";
+			if (value != null) {
+				builder.append(text, lastEnd, m.start()).append(Common.colorize(value));
 
-				if (value != null)
-					text = text.replaceAll(Pattern.quote(m.group()), Matcher.quoteReplacement(Common.colorize(value)));
+				lastEnd = m.end();
 			}
-		}
 
-		return text;
+		} while (m.find());
+
+		return lastEnd == 0 ? text : builder.append(text, lastEnd, text.length()).toString();
 	}
 
 	private class VariablesInjector extends PlaceholderExpansion {
@@ -1986,16 +2004,17 @@ class PlaceholderAPIHook {
 			final boolean insertSpace = identifier.endsWith("+");
 			identifier = insertSpace ? identifier.substring(0, identifier.length() - 1) : identifier;
 
-			for (final PAPIPlaceholder replacer : placeholders)
-				if (identifier.equalsIgnoreCase(replacer.getVariable()))
-					try {
-						final String value = Common.getOrEmpty(replacer.getValue().apply(player, identifier));
+			final PAPIPlaceholder replacer = placeholders.get(identifier.toLowerCase());
 
-						return value + (!value.isEmpty() && insertSpace ? " " : "");
+			if (replacer != null)
+				try {
+					final String value = Common.getOrEmpty(replacer.getValue().apply(player, identifier));
 
-					} catch (final Exception e) {
-						Common.error(e, "Failed to replace your '" + identifier + "' variable for " + player.getName());
-					}
+					return value + (!value.isEmpty() && insertSpace ? " " : "");
+
+				} catch (final Exception e) {
+					Common.error(e, "Failed to replace your '" + identifier + "' variable for " + player.getName());
+				}
 
 			// We return null if an invalid placeholder (f.e. %someplugin_placeholder3%) was provided
 			return null;
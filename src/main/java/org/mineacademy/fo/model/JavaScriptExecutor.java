@@ -1,8 +1,12 @@
 package org.mineacademy.fo.model;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
-import javax.script.ScriptContext;
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
@@ -19,14 +23,40 @@ import lombok.NonNull;
  *
  * The code is based off JavaScript with new Java methods, see:
  * https://winterbe.com/posts/2014/04/05/java8-nashorn-tutorial/
+ *
+ * Scripts are compiled once and cached. Each thread runs scripts with its own
+ * variables, so scripts can safely be run from async threads such as chat.
  */
 public final class JavaScriptExecutor {
 
+	/**
+	 * How many compiled scripts we keep at most, the least recently used is removed first
+	 */
+	private static final int CACHE_SIZE = 500;
+
 	/**
 	 * The engine singleton
 	 */
 	private static final ScriptEngine engine;
 
+	/**
+	 * Compiled scripts by their code
+	 */
+	private static final Map<String, CompiledScript> compiledScripts = Collections.synchronizedMap(new LinkedHashMap<String, CompiledScript>(16, 0.75F, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CompiledScript> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	});
+
+	/**
+	 * The variables of each thread, created once per thread since creating them is slow
+	 */
+	private static final ThreadLocal<Bindings> threadBindings = ThreadLocal.withInitial(() -> engine.createBindings());
+
 	// Load the engine
 	static {
 		Thread.currentThread().setContextClassLoader(SimplePlugin.class.getClassLoader());
@@ -79,15 +109,15 @@ public final class JavaScriptExecutor {
 	public static Object run(@NonNull String javascript, Player player, Event event) {
 
 		try {
-			engine.getBindings(ScriptContext.ENGINE_SCOPE).clear();
+			final Bindings bindings = prepareBindings();
 
 			if (player != null)
-				engine.put("player", player);
+				bindings.put("player", player);
 
 			if (event != null)
-				engine.put("event", event);
+				bindings.put("event", event);
 
-			return engine.eval(javascript);
+			return eval(javascript, bindings);
 
 		} catch (final ScriptException ex) {
 			Common.error(ex,
@@ -111,12 +141,43 @@ public final class JavaScriptExecutor {
 	 * @throws ScriptException
 	 */
 	public static Object run(String javascript, Map<String, Object> replacements) throws ScriptException {
-		engine.getBindings(ScriptContext.ENGINE_SCOPE).clear();
+		final Bindings bindings = prepareBindings();
 
 		if (replacements != null)
-			for (final Map.Entry<String, Object> replacement : replacements.entrySet())
-				engine.put(replacement.getKey(), replacement.getValue());
+			bindings.putAll(replacements);
+
+		return eval(javascript, bindings);
+	}
+
+	/*
+	 * Return the variables of this thread, with variables from the last run removed
+	 */
+	private static Bindings prepareBindings() throws ScriptException {
+		if (engine == null)
+			throw new ScriptException("JavaScript is not supported by your Java version, please install Java 8");
+
+		final Bindings bindings = threadBindings.get();
+		bindings.clear();
+
+		return bindings;
+	}
+
+	/*
+	 * Run the script compiling it first if it is not cached, engines
+	 * that cannot compile evaluate the code each time
+	 */
+	private static Object eval(String javascript, Bindings bindings) throws ScriptException {
+		if (!(engine instanceof Compilable))
+			return engine.eval(javascript, bindings);
+
+		CompiledScript compiled = compiledScripts.get(javascript);
+
+		if (compiled == null) {
+			compiled = ((Compilable) engine).compile(javascript);
+
+			compiledScripts.put(javascript, compiled);
+		}
 
-		return engine.eval(javascript);
+		return compiled.eval(bindings);
 	}
 }
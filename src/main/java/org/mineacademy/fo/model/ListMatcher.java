@@ -0,0 +1,275 @@
+package org.mineacademy.fo.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.mineacademy.fo.Common;
+import org.mineacademy.fo.Valid;
+import org.mineacademy.fo.plugin.SimplePlugin;
+
+/**
+ * Matches messages against a list, prepared once so that checking a message does
+ * not go through the whole list. Build it when loading settings and keep it.
+ *
+ * Matching works the same as the methods in {@link Valid}:
+ *
+ * - {@link #contains(String)} as {@link Valid#isInList(String, Iterable)}, using a hash set
+ * - {@link #startsWith(String)} as {@link Valid#isInListStartsWith(String, Iterable)}, using a prefix tree
+ * - {@link #matchesRegex(String)} as {@link Valid#isInListRegex(String, Iterable)}, searching for plain
+ *   words without a regex and joining the other regexes into one
+ *
+ * The list is copied, changing it later has no effect on this matcher.
+ */
+public final class ListMatcher {
+
+	/**
+	 * Characters that make an entry a regex rather than plain text
+	 */
+	private static final String REGEX_CHARACTERS = "\\[](){}.*+?^$|";
+
+	/**
+	 * Normalized entries, see {@link #normalize(String)}
+	 */
+	private final Set<String> entries = new HashSet<>();
+
+	/**
+	 * Normalized entries as a prefix tree
+	 */
+	private final PrefixNode prefixes = new PrefixNode();
+
+	/**
+	 * Lower cased entries without regex characters, found by a simple search
+	 */
+	private final List<String> literals = new ArrayList<>();
+
+	/**
+	 * Regexes, joined into one where possible
+	 */
+	private final List<Pattern> patterns = new ArrayList<>();
+
+	/**
+	 * Create a new matcher for the given list
+	 *
+	 * @param list
+	 */
+	public ListMatcher(Iterable<String> list) {
+		final List<String> joinable = new ArrayList<>();
+
+		// Iterate as objects since YAML can turn entries such as "yes" into booleans
+		for (final Object object : (Iterable<?>) list) {
+			Valid.checkNotNull(object, "List for matching cannot contain null entries");
+
+			final String entry = object.toString();
+			final String normalized = normalize(entry);
+
+			entries.add(normalized);
+			prefixes.add(normalized);
+
+			if (isLiteral(entry))
+				literals.add(entry.toLowerCase());
+
+			else {
+				// Make sure the regex is valid on its own, this throws an error if not
+				final Pattern pattern = Common.compilePattern(entry);
+
+				if (canJoin(entry))
+					joinable.add(entry);
+				else
+					patterns.add(pattern);
+			}
+		}
+
+		if (joinable.size() == 1)
+			patterns.add(Common.compilePattern(joinable.get(0)));
+
+		else if (joinable.size() > 1) {
+			final StringBuilder joined = new StringBuilder();
+
+			for (final String regex : joinable)
+				joined.append(joined.length() == 0 ? "" : "|").append("(?:").append(regex).append(")");
+
+			patterns.add(Common.compilePattern(joined.toString()));
+		}
+	}
+
+	/**
+	 * Returns true if any entry equals (case ignored) to the message, see {@link Valid#isInList(String, Iterable)}
+	 *
+	 * @param message
+	 * @return
+	 */
+	public boolean contains(String message) {
+		return entries.contains(normalize(message));
+	}
+
+	/**
+	 * Returns true if the message starts with any entry (case ignored), see {@link Valid#isInListStartsWith(String, Iterable)}
+	 *
+	 * @param message
+	 * @return
+	 */
+	public boolean startsWith(String message) {
+		return prefixes.isPrefixOf(normalize(message));
+	}
+
+	/**
+	 * Returns true if any entry as a regex is found in the message, see {@link Valid#isInListRegex(String, Iterable)}
+	 *
+	 * @param message
+	 * @return
+	 */
+	public boolean matchesRegex(String message) {
+		if (!literals.isEmpty()) {
+			final String lowerCase = (SimplePlugin.getInstance().regexStripColors() ? Common.stripColors(message) : message).toLowerCase();
+
+			for (final String literal : literals)
+				if (lowerCase.contains(literal))
+					return true;
+		}
+
+		for (final Pattern pattern : patterns)
+			if (Common.regExMatch(pattern, message))
+				return true;
+
+		return false;
+	}
+
+	/*
+	 * Lowercase the message and remove the initial slash, the same as Valid does
+	 */
+	private static String normalize(String message) {
+		if (message.startsWith("/"))
+			message = message.substring(1);
+
+		return message.toLowerCase();
+	}
+
+	/*
+	 * Return true if the entry is plain ASCII text without regex characters,
+	 * so a lower cased search finds the same as a case insensitive regex
+	 */
+	private static boolean isLiteral(String entry) {
+		if (entry.isEmpty())
+			return false;
+
+		for (int i = 0; i < entry.length(); i++) {
+			final char c = entry.charAt(i);
+
+			if (c > 127 || c == '&' || c < 32 || REGEX_CHARACTERS.indexOf(c) != -1)
+				return false;
+		}
+
+		return true;
+	}
+
+	/*
+	 * Return true if the regex keeps working when joined with others, which is not the
+	 * case with back references, named groups, \Q quotes without \E which would quote
+	 * the rest, and the x flag which would turn the rest into comments
+	 */
+	private static boolean canJoin(String regex) {
+		for (int i = 0; i < regex.length() - 1; i++) {
+			final char c = regex.charAt(i);
+			final char next = regex.charAt(i + 1);
+
+			if (c == '\\') {
+				if (next >= '1' && next <= '9' || next == 'k')
+					return false;
+
+				if (next == 'Q') {
+					final int end = regex.indexOf("\\E", i + 2);
+
+					if (end == -1)
+						return false;
+
+					i = end;
+				}
+
+				i++;
+
+			} else if (c == '(' && next == '?') {
+				if (regex.startsWith("(?<", i) && i + 3 < regex.length() && Character.isLetter(regex.charAt(i + 3)))
+					return false;
+
+				if (hasCommentsFlag(regex, i + 2))
+					return false;
+			}
+		}
+
+		return true;
+	}
+
+	/*
+	 * Return true if the inline flags starting at the index, such as in (?ix) or (?x:...),
+	 * turn on the x flag
+	 */
+	private static boolean hasCommentsFlag(String regex, int start) {
+		for (int i = start; i < regex.length(); i++) {
+			final char c = regex.charAt(i);
+
+			// Flags after - are turned off
+			if (c == ':' || c == ')' || c == '-')
+				return false;
+
+			if (c == 'x')
+				return true;
+
+			if ("idmsuU".indexOf(c) == -1)
+				return false;
+		}
+
+		return false;
+	}
+
+	/**
+	 * A node in the prefix tree
+	 */
+	private static final class PrefixNode {
+
+		/**
+		 * Child nodes by their character
+		 */
+		private final Map<Character, PrefixNode> children = new HashMap<>();
+
+		/**
+		 * Does an entry end at this node?
+		 */
+		private boolean terminal;
+
+		/*
+		 * Add the entry below this node
+		 */
+		private void add(String entry) {
+			PrefixNode node = this;
+
+			for (int i = 0; i < entry.length(); i++)
+				node = node.children.computeIfAbsent(entry.charAt(i), c -> new PrefixNode());
+
+			node.terminal = true;
+		}
+
+		/*
+		 * Return true if any entry below this node is a prefix of the message
+		 */
+		private boolean isPrefixOf(String message) {
+			PrefixNode node = this;
+
+			for (int i = 0; !node.terminal; i++) {
+				if (i == message.length())
+					return false;
+
+				node = node.children.get(message.charAt(i));
+
+				if (node == null)
+					return false;
+			}
+
+			return true;
+		}
+	}
+}
@@ -5,8 +5,8 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
-import org.apache.commons.lang.StringUtils;
 import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
 import org.bukkit.entity.Player;
 import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.scheduler.BukkitTask;
@@ -203,8 +203,7 @@ public class SimpleScoreboard {
 
 			String line = fixDuplicates(duplicates, entry);
 
-			if (line.length() > 40)
-				line = line.substring(0, 40);
+			line = cut(line, 40);
 
 			Remain.getScore(objective, line).setScore(i);
 		}
@@ -218,24 +217,42 @@ public class SimpleScoreboard {
 	 * @return
 	 */
 	private final String fixDuplicates(StrictList<String> duplicates, String message) {
-		message = StringUtils.substring(message, 0, 40);
+		message = cut(message, 40);
 
 		final boolean cut = MinecraftVersion.olderThan(V.v1_8);
 
-		if (cut && message.length() > 16)
-			message = message.substring(0, 16);
+		if (cut)
+			message = cut(message, 16);
 
 		if (duplicates.contains(message))
 			for (int i = 0; i < duplicates.size() && message.length() < 40; i++)
 				message += RandomUtil.nextChatColor();
 
-		if (cut && message.length() > 16)
-			message = message.substring(0, 16);
+		if (cut)
+			message = cut(message, 16);
 
 		duplicates.add(message);
 		return message;
 	}
 
+	/*
+	 * Cut the message to the given amount of characters, the client limits
+	 * characters and not width, without leaving a color character at the end
+	 */
+	private static String cut(String message, int maxLength) {
+		if (message.length() <= maxLength)
+			return message;
+
+		message = message.substring(0, maxLength);
+
+		final char last = message.charAt(maxLength - 1);
+
+		if (last == ChatColor.COLOR_CHAR || last == '&')
+			message = message.substring(0, maxLength - 1);
+
+		return message;
+	}
+
 	/**
 	 * Replaces variables in the message
 	 *
@@ -0,0 +1,147 @@
+package org.mineacademy.fo.model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Holds recently replaced variables and messages of one player or the console.
+ *
+ * Entries are not expired one by one. Instead each cache remembers the server tick
+ * it was started in and is emptied once that tick is too old, so caching costs
+ * a map lookup and nothing runs in the background.
+ */
+final class VariableSession {
+
+	/**
+	 * How many variable values we keep at most
+	 */
+	private static final int MAX_VARIABLES = 128;
+
+	/**
+	 * How many replaced messages we keep at most
+	 */
+	private static final int MAX_MESSAGES = 256;
+
+	/**
+	 * How many ticks variable values are valid for
+	 */
+	private static final int VARIABLE_TICKS = 20;
+
+	/**
+	 * Variable name, its value
+	 */
+	private final Map<String, String> variables = newCache(MAX_VARIABLES);
+
+	/**
+	 * Original message, replaced message, only valid in the tick they were replaced in
+	 */
+	private final Map<String, String> messages = newCache(MAX_MESSAGES);
+
+	/**
+	 * The tick variables were first cached in
+	 */
+	private long variablesTick = -1;
+
+	/**
+	 * The tick messages were cached in
+	 */
+	private long messagesTick = -1;
+
+	/**
+	 * Return the cached value of the variable, or null if not cached
+	 *
+	 * @param variable
+	 * @return
+	 */
+	synchronized String getVariable(String variable) {
+		expire();
+
+		return variables.get(variable);
+	}
+
+	/**
+	 * Cache the value of the variable
+	 *
+	 * @param variable
+	 * @param value
+	 */
+	synchronized void putVariable(String variable, String value) {
+		expire();
+
+		variables.put(variable, value);
+	}
+
+	/**
+	 * Return the message replaced earlier in this tick, or null if not cached
+	 *
+	 * @param message
+	 * @return
+	 */
+	synchronized String getMessage(String message) {
+		expire();
+
+		return messages.get(message);
+	}
+
+	/**
+	 * Cache the replaced message for the rest of this tick
+	 *
+	 * @param message
+	 * @param replaced
+	 */
+	synchronized void putMessage(String message, String replaced) {
+		expire();
+
+		messages.put(message, replaced);
+	}
+
+	/**
+	 * Remove all cached variables and messages
+	 */
+	synchronized void clear() {
+		variables.clear();
+		messages.clear();
+	}
+
+	/*
+	 * Empty caches started in ticks that are too old
+	 */
+	private void expire() {
+		final long tick = currentTick();
+
+		if (tick - variablesTick >= VARIABLE_TICKS) {
+			variables.clear();
+			variablesTick = tick;
+		}
+
+		if (tick != messagesTick) {
+			messages.clear();
+			messagesTick = tick;
+		}
+	}
+
+	/**
+	 * Return the current server tick, counted as 50 milliseconds
+	 * so that it works on any thread and without a running task
+	 *
+	 * @return
+	 */
+	static long currentTick() {
+		return System.currentTimeMillis() / 50;
+	}
+
+	/*
+	 * Create a new map removing the least recently used entry when over the limit
+	 */
+	private static Map<String, String> newCache(int maxSize) {
+		return new LinkedHashMap<String, String>(16, 0.75F, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+}
@@ -0,0 +1,174 @@
+package org.mineacademy.fo.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * A message split once into literal text and {} variables, so that
+ * replacing variables does not need to scan the message again.
+ *
+ * Variables are found the same way as {@link Variables#BRACKET_PLACEHOLDER_PATTERN}
+ * does, unknown variables are kept as they are.
+ */
+final class VariableTemplate {
+
+	/**
+	 * How many templates we keep at most
+	 */
+	private static final int CACHE_SIZE = 1000;
+
+	/**
+	 * Compiled templates by their message
+	 */
+	private static final Map<String, VariableTemplate> cache = new ConcurrentHashMap<>();
+
+	/**
+	 * The literal text and variables in the order they appear
+	 */
+	private final List<Segment> segments;
+
+	/**
+	 * The length of the literal text, used to size the builder
+	 */
+	private final int literalLength;
+
+	private VariableTemplate(List<Segment> segments) {
+		int literalLength = 0;
+
+		for (final Segment segment : segments)
+			literalLength += segment.text.length();
+
+		this.segments = segments;
+		this.literalLength = literalLength;
+	}
+
+	/**
+	 * Return true if the message has no variables
+	 *
+	 * @return
+	 */
+	boolean isLiteral() {
+		return segments.size() < 2 && (segments.isEmpty() || !segments.get(0).variable);
+	}
+
+	/**
+	 * Replace variables using the given function returning their value,
+	 * or null to keep the variable as it is
+	 *
+	 * @param resolver
+	 * @return
+	 */
+	String render(Function<String, String> resolver) {
+		final StringBuilder builder = new StringBuilder(literalLength + 16 * segments.size());
+
+		for (final Segment segment : segments) {
+			if (!segment.variable) {
+				builder.append(segment.text);
+
+				continue;
+			}
+
+			final String value = resolver.apply(segment.text);
+
+			if (value != null)
+				builder.append(value);
+			else
+				builder.append('{').append(segment.text).append('}');
+		}
+
+		return builder.toString();
+	}
+
+	/**
+	 * Return the compiled template for the message, compiling it if it is not cached
+	 *
+	 * @param message
+	 * @return
+	 */
+	static VariableTemplate of(String message) {
+		VariableTemplate template = cache.get(message);
+
+		if (template == null) {
+			template = compile(message);
+
+			// Messages are mostly the same few config lines, start over when full rather than tracking usage
+			if (cache.size() >= CACHE_SIZE)
+				cache.clear();
+
+			cache.put(message, template);
+		}
+
+		return template;
+	}
+
+	/**
+	 * Remove all compiled templates
+	 */
+	static void clearCache() {
+		cache.clear();
+	}
+
+	/**
+	 * Split the message into literal text and variables without caching it,
+	 * a variable is text without brackets surrounded by { and }
+	 *
+	 * @param message
+	 * @return
+	 */
+	static VariableTemplate compile(String message) {
+		final List<Segment> segments = new ArrayList<>();
+		final int length = message.length();
+
+		int literalStart = 0;
+		int index = message.indexOf('{');
+
+		while (index != -1 && index < length) {
+			int end = index + 1;
+
+			while (end < length && message.charAt(end) != '{' && message.charAt(end) != '}')
+				end++;
+
+			// Nested or unclosed bracket, the next one may start a variable
+			if (end >= length || message.charAt(end) == '{' || end == index + 1) {
+				index = end < length && message.charAt(end) == '{' ? end : message.indexOf('{', end + 1);
+
+				continue;
+			}
+
+			if (index > literalStart)
+				segments.add(new Segment(message.substring(literalStart, index), false));
+
+			segments.add(new Segment(message.substring(index + 1, end), true));
+
+			literalStart = end + 1;
+			index = message.indexOf('{', literalStart);
+		}
+
+		if (literalStart < length)
+			segments.add(new Segment(message.substring(literalStart), false));
+
+		return new VariableTemplate(segments);
+	}
+
+	/**
+	 * Literal text or a variable name
+	 */
+	@RequiredArgsConstructor
+	private static final class Segment {
+
+		/**
+		 * The text, or the variable name without brackets
+		 */
+		private final String text;
+
+		/**
+		 * Is this a variable?
+		 */
+		private final boolean variable;
+	}
+}
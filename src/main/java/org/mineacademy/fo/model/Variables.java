@@ -7,14 +7,14 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.commons.lang.StringUtils;
 import org.bukkit.ChatColor;
 import org.bukkit.command.CommandSender;
+import org.bukkit.command.ConsoleCommandSender;
 import org.bukkit.entity.Player;
 import org.mineacademy.fo.Common;
 import org.mineacademy.fo.GeoAPI;
@@ -23,7 +23,6 @@ import org.mineacademy.fo.MinecraftVersion;
 import org.mineacademy.fo.TimeUtil;
 import org.mineacademy.fo.Valid;
 import org.mineacademy.fo.collection.StrictMap;
-import org.mineacademy.fo.collection.expiringmap.ExpiringMap;
 import org.mineacademy.fo.debug.Debugger;
 import org.mineacademy.fo.plugin.SimplePlugin;
 import org.mineacademy.fo.remain.Remain;
@@ -78,14 +77,9 @@ public final class Variables {
 	private static FileReader<ScriptVariable> scriptFileReader;
 
 	/**
-	 * Player, Their Cached Variables
+	 * Sender name, their recently replaced variables and messages
 	 */
-	private static final StrictMap<String, Map<String, String>> cache = new StrictMap<>();
-
-	/**
-	 * Player, Original Message, Translated Message
-	 */
-	private static final Map<String, Map<String, String>> customCache = makeNewFastCache();
+	private static final Map<String, VariableSession> sessions = new ConcurrentHashMap<>();
 
 	// ------------------------------------------------------------------------------------------------------------
 	// Loading
@@ -160,6 +154,9 @@ public final class Variables {
 	public static void reloadScriptVariables() {
 		scriptVariables.clear();
 
+		// Messages of the old configuration are no longer used
+		VariableTemplate.clearCache();
+
 		if (scriptFileReader != null)
 			scriptVariables.addAll(scriptFileReader.load("variables/javascript.txt"));
 	}
@@ -190,6 +187,8 @@ public final class Variables {
 	 */
 	public static void addVariable(String variable, Function<CommandSender, String> replacer) {
 		customVariables.put(variable, replacer);
+
+		clearCache();
 	}
 
 	/**
@@ -200,6 +199,8 @@ public final class Variables {
 	 */
 	public static void removeVariable(String variable) {
 		customVariables.remove(variable);
+
+		clearCache();
 	}
 
 	/**
@@ -252,13 +253,14 @@ public final class Variables {
 
 		final String original = message;
 		final boolean senderIsPlayer = sender instanceof Player;
+		final VariableSession session = getSession(sender);
 
 		if (senderIsPlayer) {
-			// Already cached ? Return.
-			final Map<String, String> cached = customCache.get(sender.getName());
+			// Already replaced in this tick ? Return.
+			final String cached = session.getMessage(message);
 
-			if (cached != null && cached.containsKey(message))
-				return cached.get(message);
+			if (cached != null)
+				return cached;
 
 			// Javascript
 			if (SimplePlugin.getInstance().areScriptVariablesEnabled() && replaceCustom && !scriptVariables.isEmpty())
@@ -268,21 +270,16 @@ public final class Variables {
 			message = HookManager.replacePlaceholders((Player) sender, message);
 		}
 
-		// Default
-		message = replaceHardVariables0(sender, message);
+		// Default, only cache templates of messages as they were given to us since
+		// messages with placeholders replaced differ for each player
+		message = replaceHardVariables0(sender, message, message.equals(original));
 
 		// Support the & color system
 		if (REPLACE_COLORS)
 			message = Common.colorize(message);
 
-		if (senderIsPlayer) {
-			final Map<String, String> map = customCache.get(sender.getName());
-
-			if (map != null)
-				map.put(original, message);
-			else
-				customCache.put(sender.getName(), Common.newHashMap(original, message));
-		}
+		if (senderIsPlayer)
+			session.putMessage(original, message);
 
 		return message;
 	}
@@ -313,49 +310,56 @@ public final class Variables {
 	/**
 	 * Replaces our hardcoded variables in the message, using a cache for better performance
 	 *
+	 * Messages given to us unchanged are only scanned for variables the first time,
+	 * see {@link VariableTemplate}. Messages without brackets are never cached.
+	 *
 	 * @param sender
 	 * @param message
+	 * @param cacheTemplate false for messages already changed per player
 	 * @return
 	 */
-	private static String replaceHardVariables0(CommandSender sender, String message) {
-		final Matcher matcher = Variables.BRACKET_PLACEHOLDER_PATTERN.matcher(message);
-		final Player player = sender instanceof Player ? (Player) sender : null;
+	private static String replaceHardVariables0(CommandSender sender, String message, boolean cacheTemplate) {
+		if (message.indexOf('{') == -1)
+			return message;
 
-		while (matcher.find()) {
-			final String variable = matcher.group(1);
+		final VariableTemplate template = cacheTemplate ? VariableTemplate.of(message) : VariableTemplate.compile(message);
 
-			final boolean isSenderCached = cache.contains(sender.getName());
-			boolean makeCache = true;
+		if (template.isLiteral())
+			return message;
 
-			String value = null;
+		final Player player = sender instanceof Player ? (Player) sender : null;
+		final VariableSession session = getSession(sender);
 
-			// Player is cached
-			if (isSenderCached) {
-				final Map<String, String> senderCache = cache.get(sender.getName());
-				final String storedVariable = senderCache.get(variable);
+		return template.render(variable -> {
+			final String value = lookupCachedVariable0(session, variable, player, sender);
 
-				// This specific variable is cached
-				if (storedVariable != null) {
-					value = storedVariable;
-					makeCache = false;
-				}
-			}
+			return value != null ? Common.colorize(value) : null;
+		});
+	}
 
-			if (makeCache) {
-				value = replaceVariable0(variable, player, sender);
+	/**
+	 * Return the value of the variable for the sender, using the cache
+	 * of recently replaced variables
+	 *
+	 * @param session
+	 * @param variable
+	 * @param player
+	 * @param sender
+	 * @return
+	 */
+	private static String lookupCachedVariable0(VariableSession session, String variable, Player player, CommandSender sender) {
+		final String storedVariable = session.getVariable(variable);
 
-				if (value != null) {
-					final Map<String, String> speciCache = cache.getOrPut(sender.getName(), makeNewCache());
+		// This specific variable is cached
+		if (storedVariable != null)
+			return storedVariable;
 
-					speciCache.put(variable, value);
-				}
-			}
+		final String value = replaceVariable0(variable, player, sender);
 
-			if (value != null)
-				message = message.replace("{" + variable + "}", Common.colorize(value));
-		}
+		if (value != null)
+			session.putVariable(variable, value);
 
-		return message;
+		return value;
 	}
 
 	/**
@@ -482,32 +486,38 @@ public final class Variables {
 	}
 
 	// ------------------------------------------------------------------------------------------------------------
-	// Cache making
+	// Caching
 	// ------------------------------------------------------------------------------------------------------------
 
 	/**
-	 * Create a new expiring map with 10 millisecond expiration
+	 * Removes cached variables and messages of the given sender, such as
+	 * when something changed that their variables depend on.
 	 *
-	 * @return
+	 * Called automatically when a player quits.
+	 *
+	 * @param sender
 	 */
-	private static Map<String, Map<String, String>> makeNewFastCache() {
-		return ExpiringMap.builder()
-				.maxSize(300)
-				.expiration(10, TimeUnit.MILLISECONDS)
-				.build();
+	public static void clearCacheFor(CommandSender sender) {
+		sessions.remove(sender.getName());
 	}
 
 	/**
-	 * Create a new expiring map with 1 second expiration, used to cache player-related
-	 * variables that are called 10x after each other to save performance
-	 *
-	 * @return
+	 * Removes cached variables and messages of all senders, and compiled messages
 	 */
-	private static Map<String, String> makeNewCache() {
-		return ExpiringMap.builder()
-				.maxSize(300)
-				.expiration(1, TimeUnit.SECONDS)
-				.build();
+	public static void clearCache() {
+		sessions.clear();
+		VariableTemplate.clearCache();
+	}
+
+	/*
+	 * Return the cache of the sender, creating it if it does not exist. Other senders than
+	 * players and the console are not kept since we never learn when they are gone
+	 */
+	private static VariableSession getSession(CommandSender sender) {
+		if (!(sender instanceof Player) && !(sender instanceof ConsoleCommandSender))
+			return new VariableSession();
+
+		return sessions.computeIfAbsent(sender.getName(), name -> new VariableSession());
 	}
 }
 
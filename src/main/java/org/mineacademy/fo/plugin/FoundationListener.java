@@ -3,14 +3,18 @@ package org.mineacademy.fo.plugin;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.event.server.ServiceRegisterEvent;
 import org.mineacademy.fo.Common;
+import org.mineacademy.fo.GeoAPI;
 import org.mineacademy.fo.PlayerUtil;
 import org.mineacademy.fo.constants.FoPermissions;
+import org.mineacademy.fo.database.SimpleFlatDatabase;
 import org.mineacademy.fo.model.HookManager;
 import org.mineacademy.fo.model.SimpleScoreboard;
+import org.mineacademy.fo.model.Variables;
 import org.mineacademy.fo.update.SpigotUpdater;
 
 /**
@@ -18,6 +22,14 @@ import org.mineacademy.fo.update.SpigotUpdater;
  */
 final class FoundationListener implements Listener {
 
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onPreLogin(AsyncPlayerPreLoginEvent e) {
+		if (e.getLoginResult() == AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+			SimpleFlatDatabase.preloadForLogin(e.getUniqueId());
+			GeoAPI.prefetch(e.getAddress());
+		}
+	}
+
 	@EventHandler(priority = EventPriority.LOW)
 	public void onJoin(PlayerJoinEvent e) {
 		final SpigotUpdater check = SimplePlugin.getInstance().getUpdateCheck();
@@ -29,6 +41,7 @@ final class FoundationListener implements Listener {
 	@EventHandler(priority = EventPriority.HIGHEST)
 	public void onQuit(PlayerQuitEvent e) {
 		SimpleScoreboard.clearBoardsFor(e.getPlayer());
+		Variables.clearCacheFor(e.getPlayer());
 	}
 
 	@EventHandler(priority = EventPriority.HIGHEST)
@@ -39,6 +39,7 @@ import org.mineacademy.fo.bungee.SimpleBungee;
 import org.mineacademy.fo.collection.StrictList;
 import org.mineacademy.fo.command.SimpleCommand;
 import org.mineacademy.fo.command.SimpleCommandGroup;
+import org.mineacademy.fo.database.SimpleFlatDatabase;
 import org.mineacademy.fo.debug.Debugger;
 import org.mineacademy.fo.event.SimpleListener;
 import org.mineacademy.fo.exception.FoException;
@@ -319,6 +320,10 @@ public abstract class SimplePlugin extends JavaPlugin implements Listener {
 			// Set the logging and tell prefix
 			Common.setTellPrefix(SimpleSettings.PLUGIN_PREFIX);
 
+			// Reload files edited on the disk if enabled
+			if (watchConfigFiles())
+				YamlConfig.startWatching(getDataFolder());
+
 			// Finish off by starting metrics (currently bStats)
 			new Metrics(this);
 
@@ -624,6 +629,25 @@ public abstract class SimplePlugin extends JavaPlugin implements Listener {
 			Common.log("&cPlugin might not shut down property. Got " + t.getClass().getSimpleName() + ": " + t.getMessage());
 		}
 
+		try {
+			YamlConfig.stopWatching();
+			YamlConfig.flushPendingSaves();
+
+		} catch (final Throwable t) {
+			Common.log("Error saving pending configuration files..");
+
+			t.printStackTrace();
+		}
+
+		try {
+			SimpleFlatDatabase.shutdownAll();
+
+		} catch (final Throwable t) {
+			Common.log("Error saving pending database data..");
+
+			t.printStackTrace();
+		}
+
 		unregisterReloadables();
 
 		try {
@@ -707,8 +731,16 @@ public abstract class SimplePlugin extends JavaPlugin implements Listener {
 
 	/**
 	 * Attempts to reload the plugin
+	 *
+	 * All loaded files are parsed in parallel first, if any of them is malformed
+	 * the reload is cancelled and the plugin keeps running with the old values.
+	 * If settings fail to load, their previous values are restored and the reload
+	 * is aborted, only the main command is registered again so that you can fix
+	 * the file and reload again.
+	 *
+	 * @return false if the reload was cancelled or aborted
 	 */
-	public final void reload() {
+	public final boolean reload() {
 		final boolean hadLogPrefix = Common.ADD_LOG_PREFIX;
 		Common.ADD_LOG_PREFIX = false;
 
@@ -722,15 +754,43 @@ public abstract class SimplePlugin extends JavaPlugin implements Listener {
 		try {
 			Debugger.detectDebugMode();
 
+			// Write files saved before the reload, their save tasks are cancelled below
+			YamlConfig.flushPendingSaves();
+
+			// Parse files before changing anything so that a broken file does not leave us half reloaded
+			try {
+				YamlConfig.prepareReload();
+
+			} catch (final Throwable t) {
+				Common.error(t, "Not reloading " + getName() + " because a file could not be read, the old settings are kept!", "Error: %error");
+
+				return false;
+			}
+
 			unregisterReloadables();
 
 			onPluginPreReload();
 			reloadables.reload();
 
+			// Write files saved by the reload hooks above before their instances are dropped
+			YamlConfig.flushPendingSaves();
 			YamlConfig.clearLoadedFiles();
 
 			if (getSettings() != null)
-				YamlStaticConfig.load(getSettings());
+				try {
+					YamlStaticConfig.loadOrRestore(getSettings());
+
+				} catch (final Throwable t) {
+					YamlConfig.rollbackReload();
+
+					Common.error(t, "Failed to reload settings of " + getName() + ", the old settings are kept and the reload was aborted!", "Error: %error");
+
+					// Keep the command so that the file can be fixed and reloaded again
+					if (getMainCommand() != null)
+						getMainCommand().register(SimpleSettings.MAIN_COMMAND_ALIASES);
+
+					return false;
+				}
 
 			if (areScriptVariablesEnabled())
 				Variables.reloadScriptVariables();
@@ -749,10 +809,16 @@ public abstract class SimplePlugin extends JavaPlugin implements Listener {
 
 			registerBungeeCord();
 
+			return true;
+
 		} catch (final Throwable t) {
 			Common.throwError(t, "Error reloading " + getName() + " " + getVersion());
 
+			return false;
+
 		} finally {
+			YamlConfig.finishReload();
+
 			Common.log(Common.consoleLineSmooth());
 
 			Common.ADD_LOG_PREFIX = hadLogPrefix;
@@ -1019,6 +1085,18 @@ public abstract class SimplePlugin extends JavaPlugin implements Listener {
 		return false;
 	}
 
+	/**
+	 * Should we reload configuration files when they are changed on the disk?
+	 *
+	 * Only the changed file is reloaded, except for settings and localization
+	 * which reload the whole plugin. See {@link YamlConfig#startWatching(java.io.File)}
+	 *
+	 * @return
+	 */
+	public boolean watchConfigFiles() {
+		return false;
+	}
+
 	/**
 	 * Should we replace variables in {@link Variables} also in the javascript code?
 	 *
@@ -1931,13 +1931,8 @@ class BungeeChatProvider {
 	}
 
 	private static void sendComponent0(CommandSender sender, BaseComponent... comps) {
-		String plainMessage = "";
-
-		for (final BaseComponent comp : comps)
-			plainMessage += comp.toLegacyText();
-
 		if (!(sender instanceof Player)) {
-			tell0(sender, plainMessage);
+			tell0(sender, toLegacyText0(comps));
 
 			return;
 		}
@@ -1949,13 +1944,23 @@ class BungeeChatProvider {
 			if (MinecraftVersion.newerThan(V.v1_7))
 				Common.error(ex, "Error printing JSON message, sending as plain.");
 
-			tell0(sender, plainMessage);
+			tell0(sender, toLegacyText0(comps));
 
 		} catch (final Exception ex) {
-			tell0(sender, plainMessage);
+			tell0(sender, toLegacyText0(comps));
 		}
 	}
 
+	// Only converted when sending as plain, so that sending to players does not pay for it
+	private static String toLegacyText0(BaseComponent... comps) {
+		final StringBuilder plainMessage = new StringBuilder();
+
+		for (final BaseComponent comp : comps)
+			plainMessage.append(comp.toLegacyText());
+
+		return plainMessage.toString();
+	}
+
 	private static void tell0(CommandSender sender, String msg) {
 		Valid.checkNotNull(sender, "Sender cannot be null");
 
@@ -0,0 +1,180 @@
+package org.mineacademy.fo.settings;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.mineacademy.fo.Common;
+import org.mineacademy.fo.FileUtil;
+
+/**
+ * Watches a folder and its subfolders for changed .yml files and reloads
+ * the loaded config of each changed file, see {@link YamlConfig#startWatching(File)}
+ *
+ * Files are looked up on the main thread once they stop changing
+ * for {@link #DEBOUNCE_MS}, parsed asynchronously, then swapped in on the main thread.
+ */
+final class ConfigWatcher extends Thread {
+
+	/**
+	 * How long a file must stay unchanged before we reload it, editors
+	 * often write files in several steps
+	 */
+	private static final long DEBOUNCE_MS = 500;
+
+	/**
+	 * The watch service, closed to stop this thread
+	 */
+	private final WatchService service;
+
+	/**
+	 * Watched directories by their watch key
+	 */
+	private final Map<WatchKey, Path> directories = new HashMap<>();
+
+	/**
+	 * Changed files waiting for the debounce to pass, with the time of their last change
+	 */
+	private final Map<Path, Long> changedFiles = new HashMap<>();
+
+	/**
+	 * Create a new watcher for the folder and all its subfolders, call start() to run it
+	 *
+	 * @param folder
+	 * @throws IOException
+	 */
+	ConfigWatcher(File folder) throws IOException {
+		super("Config-Watcher");
+
+		this.service = FileSystems.getDefault().newWatchService();
+
+		try (Stream<Path> paths = Files.walk(folder.toPath())) {
+			for (final Iterator<Path> it = paths.filter(Files::isDirectory).iterator(); it.hasNext();)
+				register(it.next());
+		}
+
+		setDaemon(true);
+	}
+
+	/*
+	 * Start watching the directory
+	 */
+	private void register(Path directory) throws IOException {
+		directories.put(directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY), directory);
+	}
+
+	/**
+	 * Stops watching
+	 */
+	void close() {
+		try {
+			service.close();
+
+		} catch (final IOException ex) {
+			Common.error(ex, "Failed to stop watching configuration files");
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (true) {
+				final WatchKey key = changedFiles.isEmpty() ? service.take() : service.poll(DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+
+				if (key != null)
+					collectChanges(key);
+
+				reloadSettledFiles();
+			}
+
+		} catch (final InterruptedException | ClosedWatchServiceException ex) {
+			// Stopped
+		}
+	}
+
+	/*
+	 * Remember changed .yml files and start watching new directories
+	 */
+	private void collectChanges(WatchKey key) {
+		final Path directory = directories.get(key);
+
+		for (final WatchEvent<?> event : key.pollEvents()) {
+			if (directory == null || event.kind() == StandardWatchEventKinds.OVERFLOW)
+				continue;
+
+			final Path path = directory.resolve((Path) event.context());
+
+			if (Files.isDirectory(path)) {
+				if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE)
+					try {
+						register(path);
+
+					} catch (final IOException ex) {
+						Common.error(ex, "Failed to watch new folder " + path);
+					}
+
+			} else if (path.getFileName().toString().endsWith(".yml"))
+				changedFiles.put(path, System.currentTimeMillis());
+		}
+
+		if (!key.reset())
+			directories.remove(key);
+	}
+
+	/*
+	 * Hand files that did not change for the debounce time over to the main thread
+	 */
+	private void reloadSettledFiles() {
+		final long now = System.currentTimeMillis();
+
+		for (final Iterator<Map.Entry<Path, Long>> it = changedFiles.entrySet().iterator(); it.hasNext();) {
+			final Map.Entry<Path, Long> entry = it.next();
+
+			if (now - entry.getValue() < DEBOUNCE_MS)
+				continue;
+
+			final File file = entry.getKey().toFile();
+
+			it.remove();
+
+			// Loaded files are only accessed on the main thread
+			Common.runLater(0, () -> reloadIfLoaded(file));
+		}
+	}
+
+	/*
+	 * Parse the file off the main thread if it is loaded and was changed
+	 * by someone else, then reload it back on the main thread
+	 */
+	private static void reloadIfLoaded(File file) {
+		final ConfigInstance instance = YamlConfig.findInstance(file);
+
+		// Not loaded, or this is our own save
+		if (instance == null || !file.exists() || instance.isWrittenByUs(file))
+			return;
+
+		Common.runLaterAsync(() -> {
+			try {
+				final YamlConfiguration parsed = FileUtil.loadConfigurationStrict(file);
+
+				Common.runLater(0, () -> YamlConfig.reloadChanged(instance, parsed));
+
+			} catch (final Throwable t) {
+				Common.error(t, "Not reloading " + file.getName() + " because it could not be read, fix the file and save it again", "Error: %error");
+			}
+		});
+	}
+}
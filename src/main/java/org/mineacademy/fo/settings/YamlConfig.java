@@ -3,25 +3,40 @@ package org.mineacademy.fo.settings;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.StandardOpenOption;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 import javax.annotation.Nullable;
 
+import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.enchantments.Enchantment;
 import org.bukkit.entity.Player;
 import org.bukkit.event.entity.CreatureSpawnEvent.SpawnReason;
+import org.bukkit.scheduler.BukkitTask;
 import org.mineacademy.fo.Common;
 import org.mineacademy.fo.FileUtil;
 import org.mineacademy.fo.ItemUtil;
@@ -34,6 +49,7 @@ import org.mineacademy.fo.Valid;
 import org.mineacademy.fo.collection.SerializedMap;
 import org.mineacademy.fo.collection.StrictList;
 import org.mineacademy.fo.collection.StrictMap;
+import org.mineacademy.fo.collection.expiringmap.NamedThreadFactory;
 import org.mineacademy.fo.constants.FoConstants;
 import org.mineacademy.fo.debug.Debugger;
 import org.mineacademy.fo.exception.FoException;
@@ -67,6 +83,14 @@ public class YamlConfig {
 	 */
 	public static boolean DESERIALIZE_NULL = false;
 
+	/**
+	 * How many ticks to wait before writing a file after {@link #save()} is called.
+	 * Saves of the same file within this time are written only once, off the main thread.
+	 *
+	 * Set to 0 to write files right away on the thread calling save.
+	 */
+	public static int SAVE_DELAY_TICKS = 10;
+
 	// ------------------------------------------------------------------------------------------------------------
 	// Only allow one instance of file to be loaded for safety.
 	// ------------------------------------------------------------------------------------------------------------
@@ -76,6 +100,22 @@ public class YamlConfig {
 	 */
 	private static volatile StrictMap<ConfigInstance, List<YamlConfig>> loadedFiles = new StrictMap<>();
 
+	/**
+	 * Files parsed ahead by {@link #prepareReload()}, by file name,
+	 * used instead of parsing them again when they are loaded, dropped when saved
+	 */
+	private static final Map<String, PreparedFile> preparedFiles = new ConcurrentHashMap<>();
+
+	/**
+	 * The loaded files before {@link #prepareReload()}, restored by {@link #rollbackReload()}
+	 */
+	private static Map<ConfigInstance, List<YamlConfig>> filesBeforeReload;
+
+	/**
+	 * The watcher reloading changed files, null if not watching
+	 */
+	private static ConfigWatcher watcher;
+
 	/**
 	 * Clear the list of loaded files
 	 */
@@ -83,6 +123,181 @@ public class YamlConfig {
 		loadedFiles.clear();
 	}
 
+	/**
+	 * Parses all loaded files from the disk in parallel and keeps them
+	 * for when they are loaded again after {@link #clearLoadedFiles()}.
+	 * Their default files are reused since they do not change.
+	 *
+	 * Call this before changing anything when reloading, if a file is
+	 * malformed an exception is thrown and the old files stay in use.
+	 *
+	 * Call {@link #finishReload()} when done.
+	 *
+	 * @throws Exception if a file could not be parsed
+	 */
+	public static final void prepareReload() throws Exception {
+		final List<ConfigInstance> instances = new ArrayList<>(loadedFiles.keySet());
+		final int threads = Math.max(1, Math.min(instances.size(), Runtime.getRuntime().availableProcessors()));
+		final ExecutorService parser = Executors.newFixedThreadPool(threads, new NamedThreadFactory("Config-Reload-%d"));
+
+		try {
+			final Map<ConfigInstance, Future<YamlConfiguration>> parsing = new LinkedHashMap<>();
+
+			for (final ConfigInstance instance : instances)
+				if (instance.getFile().exists())
+					parsing.put(instance, parser.submit(() -> FileUtil.loadConfigurationStrict(instance.getFile())));
+
+			final Map<String, PreparedFile> parsed = new HashMap<>();
+
+			for (final ConfigInstance instance : instances) {
+				final Future<YamlConfiguration> config = parsing.get(instance);
+
+				try {
+					parsed.put(instance.getFile().getName(), new PreparedFile(config != null ? config.get() : null, instance.getDefaultConfig()));
+
+				} catch (final ExecutionException ex) {
+					Remain.sneaky(ex.getCause());
+				}
+			}
+
+			preparedFiles.clear();
+			preparedFiles.putAll(parsed);
+
+			filesBeforeReload = new LinkedHashMap<>(loadedFiles.getSource());
+
+			Debugger.debug("config", "Parsed " + parsing.size() + " file(s) for reload on " + threads + " thread(s)");
+
+		} finally {
+			parser.shutdownNow();
+		}
+	}
+
+	/**
+	 * Restores the files loaded before {@link #prepareReload()}, use when
+	 * loading them again failed so that the old values stay in use
+	 */
+	public static final void rollbackReload() {
+
+		// Only roll back to a complete set of files, prepareReload stores them after parsing all
+		if (filesBeforeReload == null) {
+			Common.log("Cannot restore the files loaded before the reload since they were not all prepared.");
+
+			return;
+		}
+
+		loadedFiles.setAll(filesBeforeReload);
+
+		for (final ConfigInstance instance : filesBeforeReload.keySet())
+			instance.invalidateCache();
+	}
+
+	/**
+	 * Forgets files parsed by {@link #prepareReload()} that were not loaded again
+	 */
+	public static final void finishReload() {
+		preparedFiles.clear();
+		filesBeforeReload = null;
+	}
+
+	/*
+	 * Forget the copy of the file parsed by prepareReload, called when the file is
+	 * saved so that it is read again from the disk instead of the stale copy
+	 */
+	static final void discardPrepared(File file) {
+		preparedFiles.remove(file.getName());
+	}
+
+	/**
+	 * Writes all files with pending saves right now and waits until
+	 * they are written, called automatically on reload and shutdown
+	 */
+	public static final void flushPendingSaves() {
+		ConfigInstance.flushAll();
+	}
+
+	/**
+	 * Starts watching the given folder and its subfolders, reloading loaded files
+	 * when they are changed on the disk, such as when edited by hand.
+	 *
+	 * Only the changed file is reloaded and {@link #onLoadFinish()} called for
+	 * configs using it. Settings and localization files reload the whole plugin
+	 * since their values are stored in static fields.
+	 *
+	 * @param folder
+	 */
+	public static final synchronized void startWatching(File folder) {
+		stopWatching();
+
+		try {
+			watcher = new ConfigWatcher(folder);
+			watcher.start();
+
+		} catch (final IOException ex) {
+			Common.error(ex, "Failed to watch configuration files in " + folder);
+		}
+	}
+
+	/**
+	 * Stops watching files, see {@link #startWatching(File)}
+	 */
+	public static final synchronized void stopWatching() {
+		if (watcher != null) {
+			watcher.close();
+
+			watcher = null;
+		}
+	}
+
+	/*
+	 * Replace the file's config with the given one parsed from the disk and
+	 * call onLoadFinish for configs using it, called on the main thread
+	 */
+	static final void reloadChanged(ConfigInstance instance, YamlConfiguration parsed) {
+		final List<YamlConfig> configs = loadedFiles.get(instance);
+
+		// Unloaded in the meanwhile
+		if (configs == null)
+			return;
+
+		for (final YamlConfig config : configs)
+			if (!config.isReloadableAlone()) {
+				Common.log("Detected changes in " + instance.getFile().getName() + ", reloading..");
+
+				SimplePlugin.getInstance().reload();
+				return;
+			}
+
+		instance.replaceConfig(parsed);
+
+		for (final YamlConfig config : configs)
+			try {
+				config.onLoadFinish();
+				config.saveIfNecessary0();
+
+			} catch (final Throwable t) {
+				Common.error(t, "Failed to reload " + instance.getFile().getName() + " after it was changed");
+			}
+
+		Common.log("Reloaded " + instance.getFile().getName() + " after it was changed");
+	}
+
+	/**
+	 * Looks up a loaded {@link ConfigInstance} of the given file,
+	 * only call on the main thread since loaded files are changed there
+	 *
+	 * @param file
+	 * @return
+	 */
+	static final ConfigInstance findInstance(File file) {
+		final File absolute = file.getAbsoluteFile();
+
+		for (final ConfigInstance instance : loadedFiles.keySet())
+			if (instance.getFile().getAbsoluteFile().equals(absolute))
+				return instance;
+
+		return null;
+	}
+
 	/**
 	 * Remove a loaded file from {@link #loadedFiles}
 	 *
@@ -208,12 +423,15 @@ public class YamlConfig {
 			ConfigInstance instance = findInstance(file.getName());
 
 			if (instance == null) {
+				ConfigInstance.flushPending(file.getName());
+
+				final PreparedFile prepared = preparedFiles.remove(file.getName());
 
 				if (!file.exists())
 					FileUtil.extract(localePath, (line) -> replaceVariables(line, FileUtil.getFileName(localePath)));
 
-				final YamlConfiguration config = FileUtil.loadConfigurationStrict(file);
-				final YamlConfiguration defaultsConfig = Remain.loadConfiguration(is);
+				final YamlConfiguration config = prepared != null && prepared.config != null ? prepared.config : FileUtil.loadConfigurationStrict(file);
+				final YamlConfiguration defaultsConfig = prepared != null && prepared.defaults != null ? prepared.defaults : Remain.loadConfiguration(is);
 
 				Valid.checkBoolean(file != null && file.exists(), "Failed to load " + localePath + " from " + file);
 
@@ -268,6 +486,9 @@ public class YamlConfig {
 			ConfigInstance instance = findInstance(to);
 
 			if (instance == null) {
+				ConfigInstance.flushPending(new File(to).getName());
+
+				final PreparedFile prepared = preparedFiles.remove(new File(to).getName());
 				final File file;
 				final YamlConfiguration config;
 				YamlConfiguration defaultsConfig = null;
@@ -275,10 +496,16 @@ public class YamlConfig {
 				// We will have the default file to return to
 				// This enables auto config update
 				if (from != null) {
-					final InputStream is = FileUtil.getInternalResource(from);
-					Valid.checkNotNull(is, "Inbuilt resource not found: " + from);
+					if (prepared != null && prepared.defaults != null)
+						defaultsConfig = prepared.defaults;
+
+					else {
+						final InputStream is = FileUtil.getInternalResource(from);
+						Valid.checkNotNull(is, "Inbuilt resource not found: " + from);
+
+						defaultsConfig = Remain.loadConfiguration(is);
+					}
 
-					defaultsConfig = Remain.loadConfiguration(is);
 					file = FileUtil.extract(false, from, to, (line) -> replaceVariables(line, FileUtil.getFileName(to)));
 				}
 
@@ -287,7 +514,7 @@ public class YamlConfig {
 
 				Valid.checkNotNull(file, "Failed to " + (from != null ? "copy settings from " + from + " to " : "read settings from ") + to);
 
-				config = FileUtil.loadConfigurationStrict(file);
+				config = prepared != null && prepared.config != null ? prepared.config : FileUtil.loadConfigurationStrict(file);
 				instance = new ConfigInstance(file, config, defaultsConfig);
 
 				addConfig(instance, this);
@@ -325,31 +552,13 @@ public class YamlConfig {
 	}
 
 	/**
-	 * Replace variables in the file and write it again. For details see {@link #replaceVariables(String, String)}
-	 *
-	 * @param file
-	 */
-	private final void rewriteVariablesIn(File file) {
-		final List<String> lines = FileUtil.readLines(file);
-		final String fileName = FileUtil.getFileName(file.getName()).toLowerCase();
-
-		for (int i = 0; i < lines.size(); i++) {
-			final String line = lines.get(i);
-
-			lines.set(i, replaceVariables(line, fileName));
-		}
-
-		FileUtil.write(file, lines, StandardOpenOption.TRUNCATE_EXISTING);
-	}
-
-	/**
-	 * Replace variables in the destination file before it is copied.
+	 * Replace variables in the destination file before it is copied or saved.
 	 * Variables include {plugin.name} (lowercase), {file} and {file.lowercase}
 	 * as well as custom variables from {@link #replaceVariables(String)} method
 	 *
 	 * @param file
 	 */
-	private final String replaceVariables(String line, String fileName) {
+	static final String replaceVariables(String line, String fileName) {
 		line = line.replace("{plugin.name}", SimplePlugin.getNamed().toLowerCase());
 		line = line.replace("{file}", fileName);
 		line = line.replace("{file.lowercase}", fileName);
@@ -363,15 +572,36 @@ public class YamlConfig {
 	protected void onLoadFinish() {
 	}
 
+	/**
+	 * Can this config be reloaded on its own when its file changes, or does
+	 * that require reloading the whole plugin?
+	 *
+	 * @return
+	 */
+	boolean isReloadableAlone() {
+		return true;
+	}
+
 	/**
 	 * Return the Bukkit YAML instance of the config file
 	 *
+	 * Getters cache their values, if you change the returned instance
+	 * directly instead of using the set methods, call {@link #invalidateCache()} after.
+	 *
 	 * @return
 	 */
 	protected final YamlConfiguration getConfig() {
 		return instance.getConfig();
 	}
 
+	/**
+	 * Forget cached values of getters, call after changing the config
+	 * returned by {@link #getConfig()} outside of the set methods
+	 */
+	protected final void invalidateCache() {
+		instance.invalidateCache();
+	}
+
 	/**
 	 * Return the Bukkit YAML instance of defaults file, or null if not set
 	 *
@@ -406,6 +636,9 @@ public class YamlConfig {
 
 	/**
 	 * Saves the content of this config into the file
+	 *
+	 * The file is written after {@link #SAVE_DELAY_TICKS} on another thread,
+	 * see {@link #flushPendingSaves()} to write it right away
 	 */
 	public final void save() {
 		if (loading) {
@@ -419,10 +652,10 @@ public class YamlConfig {
 		final String file = getFileName();
 		onSave();
 
+		instance.invalidateCache();
 		instance.save(header != null ? header : file.equals(FoConstants.File.DATA) ? FoConstants.Header.DATA_FILE : FoConstants.Header.UPDATED_FILE);
-		rewriteVariablesIn(instance.getFile());
 
-		Debugger.debug("config", "&eSaved updated file: " + file + " (# Comments removed)");
+		Debugger.debug("config", "&eQueued saving updated file: " + file + " (# Comments removed)");
 	}
 
 	/**
@@ -467,6 +700,8 @@ public class YamlConfig {
 	 * If {@link #getDefaults()} is set, and the value does not exist, we update the config
 	 * file automatically.
 	 *
+	 * Values are cached until the config is changed, saved or reloaded.
+	 *
 	 * @param <T>
 	 * @param path
 	 * @param type
@@ -474,8 +709,16 @@ public class YamlConfig {
 	 */
 	private final <T> T getT(String path, Class<T> type) {
 		Valid.checkNotNull(path, "Path cannot be null");
-		path = formPathPrefix(path);
 
+		final String fullPath = formPathPrefix(path);
+
+		return instance.getRawCache().get(fullPath, type, () -> getT0(fullPath, type));
+	}
+
+	/*
+	 * Resolve the value for getT, path already has the prefix
+	 */
+	private final <T> T getT0(String path, Class<T> type) {
 		Valid.checkBoolean(!path.contains(".."), "Path must not contain '..' or more: " + path);
 		Valid.checkBoolean(!path.endsWith("."), "Path must not end with '.': " + path);
 
@@ -483,7 +726,7 @@ public class YamlConfig {
 		// Also logs out the console message about when we save this change
 		addDefaultIfNotExist(path, type);
 
-		Object raw = getConfig().get(path);
+		Object raw = instance.getConfig().get(path);
 
 		// Ensure that the default config actually did have the value, if used
 		if (getDefaults() != null)
@@ -538,12 +781,30 @@ public class YamlConfig {
 		// Special case: If there is no key at your config and neither at the default config,
 		// and we should deserialize non-existing values, we just return false instead of throwing
 		// an error at the below getT method
-		if (!isSet(path) && !isSetDefault(path) && usingDefaults && def == null && DESERIALIZE_NULL)
+		if (DESERIALIZE_NULL && def == null && usingDefaults && !isSet(path) && !isSetDefault(path))
 			return def;
 
+		// Only cache values that cannot be changed by whoever gets them
+		final T value = isImmutable(type) ? instance.getValueCache().get(formPathPrefix(path), type, () -> deserialize(path, type)) : deserialize(path, type);
+
+		return value != null ? value : def;
+	}
+
+	/*
+	 * Get the value at the path and deserialize it to the given type, or return null if not set
+	 */
+	private final <T> T deserialize(String path, Class<T> type) {
 		final Object object = convertIfNull(type, getT(path, Object.class));
 
-		return object != null ? SerializeUtil.deserialize(type, object) : def;
+		return object != null ? SerializeUtil.deserialize(type, object) : null;
+	}
+
+	/*
+	 * Return true if values of the given type cannot be modified and are safe to share
+	 */
+	private static boolean isImmutable(Class<?> type) {
+		return type == String.class || type == Integer.class || type == Long.class || type == Double.class || type == Float.class
+				|| type == Short.class || type == Byte.class || type == Boolean.class || type == Character.class || type == UUID.class || type.isEnum();
 	}
 
 	/**
@@ -793,7 +1054,7 @@ public class YamlConfig {
 	 * @return
 	 */
 	protected final CasusHelper getCasus(String path) {
-		return new CasusHelper(getString(path));
+		return instance.getValueCache().get(formPathPrefix(path), CasusHelper.class, () -> new CasusHelper(getString(path)));
 	}
 
 	/**
@@ -803,7 +1064,7 @@ public class YamlConfig {
 	 * @return
 	 */
 	protected final TitleHelper getTitle(String path) {
-		return new TitleHelper(path);
+		return instance.getValueCache().get(formPathPrefix(path), TitleHelper.class, () -> new TitleHelper(path));
 	}
 
 	/**
@@ -813,7 +1074,7 @@ public class YamlConfig {
 	 * @return
 	 */
 	protected final TimeHelper getTime(String path) {
-		return new TimeHelper(path);
+		return instance.getValueCache().get(formPathPrefix(path), TimeHelper.class, () -> new TimeHelper(path));
 	}
 
 	/**
@@ -1102,7 +1363,7 @@ public class YamlConfig {
 				path = formPathPrefix(path);
 
 		// add default
-		if (getDefaults() != null && !getConfig().isSet(path)) {
+		if (getDefaults() != null && !instance.getConfig().isSet(path)) {
 			Valid.checkBoolean(getDefaults().isSet(path), "Default '" + getFileName() + "' lacks a map at " + path);
 
 			for (final String key : getDefaults().getConfigurationSection(path).getKeys(false))
@@ -1111,7 +1372,7 @@ public class YamlConfig {
 
 		final LinkedHashMap<Key, Value> keys = new LinkedHashMap<>();
 
-		final Object pathObject = getConfig().get(path);
+		final Object pathObject = instance.getConfig().get(path);
 
 		if (pathObject == null)
 			if (def != null)
@@ -1120,9 +1381,9 @@ public class YamlConfig {
 			else
 				throw new FoException("Map not found at " + path + " in " + getFileName());
 
-		Valid.checkBoolean(getConfig().isConfigurationSection(path), "Must be section at '" + path + "', got " + pathObject);
+		Valid.checkBoolean(instance.getConfig().isConfigurationSection(path), "Must be section at '" + path + "', got " + pathObject);
 
-		for (final Map.Entry<String, Object> entry : getConfig().getConfigurationSection(path).getValues(false).entrySet()) {
+		for (final Map.Entry<String, Object> entry : instance.getConfig().getConfigurationSection(path).getValues(false).entrySet()) {
 			final Object key = entry.getKey();
 			final Object val = entry.getValue();
 
@@ -1152,7 +1413,7 @@ public class YamlConfig {
 		path = formPathPrefix(path);
 
 		// add default
-		if (getDefaults() != null && !getConfig().isSet(path)) {
+		if (getDefaults() != null && !instance.getConfig().isSet(path)) {
 			Valid.checkBoolean(getDefaults().isSet(path), "Default '" + getFileName() + "' lacks a section at " + path);
 
 			for (final String name : getDefaults().getConfigurationSection(path).getKeys(false)) {
@@ -1162,12 +1423,12 @@ public class YamlConfig {
 			}
 		}
 
-		Valid.checkBoolean(getConfig().isSet(path), "Malfunction copying default section to " + path);
+		Valid.checkBoolean(instance.getConfig().isSet(path), "Malfunction copying default section to " + path);
 
 		// key, values assigned to the key
 		final TreeMap<String, LinkedHashMap<String, Object>> groups = new TreeMap<>();
 
-		for (final String name : getConfig().getConfigurationSection(path).getKeys(false)) {
+		for (final String name : instance.getConfig().getConfigurationSection(path).getKeys(false)) {
 			// type, value (UNPARSED)
 			final LinkedHashMap<String, Object> valuesRaw = getMap(path + "." + name, String.class, Object.class);
 
@@ -1217,7 +1478,8 @@ public class YamlConfig {
 		path = formPathPrefix(path);
 		value = SerializeUtil.serialize(value);
 
-		getConfig().set(path, value);
+		instance.getConfig().set(path, value);
+		instance.invalidateCache();
 
 		save = true; // Schedule save for later anyways
 	}
@@ -1243,12 +1505,13 @@ public class YamlConfig {
 		final String oldPathPrefix = pathPrefix;
 
 		fromPathRel = formPathPrefix(fromPathRel);
-		getConfig().set(fromPathRel, null);
+		instance.getConfig().set(fromPathRel, null);
 
 		pathPrefix = oldPathPrefix; // set to previous
 
 		checkAndFlagForSave(toPathAbs, value, false);
-		getConfig().set(toPathAbs, value);
+		instance.getConfig().set(toPathAbs, value);
+		instance.invalidateCache();
 
 		Common.log("&7Update " + getFileName() + ". Move &b\'&f" + fromPathRel + "&b\' &7(was \'" + value + "&7\') to " + "&b\'&f" + toPathAbs + "&b\'" + "&r");
 
@@ -1337,7 +1600,7 @@ public class YamlConfig {
 	 * @return
 	 */
 	protected final boolean isSetAbsolute(String path) {
-		return getConfig().isSet(path);
+		return instance.getConfig().isSet(path);
 	}
 
 	/**
@@ -1389,7 +1652,8 @@ public class YamlConfig {
 			checkAssignable(true, pathAbs, object, type);
 
 			checkAndFlagForSave(pathAbs, object);
-			getConfig().set(pathAbs, object);
+			instance.getConfig().set(pathAbs, object);
+			instance.invalidateCache();
 		}
 	}
 
@@ -1593,6 +1857,23 @@ public class YamlConfig {
 	}
 }
 
+/**
+ * A file parsed ahead when reloading, see {@link YamlConfig#prepareReload()}
+ */
+@RequiredArgsConstructor
+final class PreparedFile {
+
+	/**
+	 * The parsed file, or null if it did not exist
+	 */
+	final YamlConfiguration config;
+
+	/**
+	 * The defaults of the file, or null if it had none
+	 */
+	final YamlConfiguration defaults;
+}
+
 /**
  * For safe read-write access we only store one opened file of the same name.
  *
@@ -1608,9 +1889,10 @@ class ConfigInstance {
 	private final File file;
 
 	/**
-	 * Our config we are manipulating.
+	 * Our config we are manipulating, replaced when the file changes on the disk.
 	 */
-	private final YamlConfiguration config;
+	@NonNull
+	private volatile YamlConfiguration config;
 
 	/**
 	 * The default config we reach out to fill values from.
@@ -1618,19 +1900,132 @@ class ConfigInstance {
 	private final YamlConfiguration defaultConfig;
 
 	/**
-	 * Saves the config instance with the given header, can be null
+	 * Raw values returned by getters, by path and type
+	 */
+	private final ValueCache rawCache = new ValueCache();
+
+	/**
+	 * Deserialized values returned by getters, by path and type
+	 */
+	private final ValueCache valueCache = new ValueCache();
+
+	/**
+	 * Forgets all cached values, called when the config changes
+	 */
+	protected void invalidateCache() {
+		rawCache.clear();
+		valueCache.clear();
+	}
+
+	/**
+	 * Files waiting for their save delay to pass, in the order they were saved
+	 */
+	private static final Set<ConfigInstance> pendingSaves = new LinkedHashSet<>();
+
+	/**
+	 * The thread writing files, one at the time in the order they were serialized
+	 */
+	private static final ExecutorService writer = Executors.newSingleThreadExecutor(new NamedThreadFactory("Config-Writer-%d"));
+
+	/**
+	 * The header to write with the pending save
+	 */
+	private String[] pendingHeader;
+
+	/**
+	 * The task writing the pending save, null if none was scheduled
+	 */
+	private BukkitTask pendingTask;
+
+	/**
+	 * The modification time and length of the file after we last wrote it,
+	 * to tell our own saves apart from changes made by others
+	 */
+	private volatile long lastWrittenModified = -1, lastWrittenLength = -1;
+
+	/**
+	 * Marks the config to be saved with the given header, can be null,
+	 * see {@link YamlConfig#SAVE_DELAY_TICKS}
 	 *
 	 * @param header
 	 */
 	protected void save(String[] header) {
+		final boolean delayed = YamlConfig.SAVE_DELAY_TICKS > 0 && SimplePlugin.hasInstance();
+
+		// The file will differ from its copy parsed for a reload in progress
+		YamlConfig.discardPrepared(file);
+
+		synchronized (pendingSaves) {
+			pendingHeader = header;
+			pendingSaves.add(this);
+
+			// Check the task was not cancelled such as when the plugin cancels all its tasks
+			if (delayed) {
+				if (pendingTask == null || !Bukkit.getScheduler().isQueued(pendingTask.getTaskId()))
+					pendingTask = Common.runLater(YamlConfig.SAVE_DELAY_TICKS, () -> flush(false));
+
+				return;
+			}
+		}
+
+		flush(true);
+	}
+
+	/*
+	 * Serialize the config if it has a pending save and write it on the writer thread,
+	 * waiting until it is written when wait is true
+	 */
+	private void flush(boolean wait) {
+		final String[] header;
+
+		synchronized (pendingSaves) {
+			if (!pendingSaves.remove(this)) {
+				if (wait)
+					awaitWrites();
+
+				return;
+			}
+
+			header = pendingHeader;
+			pendingHeader = null;
+			pendingTask = null;
+		}
 
 		if (header != null) {
 			config.options().copyHeader(true);
 			config.options().header(String.join("\n", header));
 		}
 
+		// Serialize here since the config may be edited on this thread while being written
+		final String content = YamlConfig.replaceVariables(config.saveToString(), FileUtil.getFileName(file.getName()).toLowerCase());
+		final Future<?> write = writer.submit(() -> write(content));
+
+		if (wait)
+			await(write);
+	}
+
+	/*
+	 * Write the content into a temporary file and move it over
+	 * the file so that it is never left half written
+	 */
+	private void write(String content) {
+		final File temp = new File(file.getPath() + ".tmp");
+
 		try {
-			config.save(file);
+			if (file.getParentFile() != null)
+				file.getParentFile().mkdirs();
+
+			Files.write(temp.toPath(), content.getBytes(StandardCharsets.UTF_8));
+
+			try {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+			} catch (final AtomicMoveNotSupportedException ex) {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+
+			lastWrittenModified = file.lastModified();
+			lastWrittenLength = file.length();
 
 		} catch (final IOException e) {
 			Common.error(e, "Failed to save " + file.getName());
@@ -1638,23 +2033,118 @@ class ConfigInstance {
 	}
 
 	/**
-	 * Loads the config file again without saving changes
+	 * Loads the config file again without saving changes, pending
+	 * saves are written first
 	 *
 	 * @throws Exception
 	 */
 	protected void reload() throws Exception {
+		flush(true);
+
 		config.load(file);
+		invalidateCache();
 	}
 
 	/**
-	 * Removes the config file from the disk
+	 * Return true if the file looks the same as after we last wrote it
+	 *
+	 * @param file
+	 * @return
+	 */
+	boolean isWrittenByUs(File file) {
+		return file.lastModified() == lastWrittenModified && file.length() == lastWrittenLength;
+	}
+
+	/**
+	 * Replaces the config with the given one, discarding pending saves
+	 * since the file was changed by someone else
+	 *
+	 * @param config
+	 */
+	protected void replaceConfig(YamlConfiguration config) {
+		synchronized (pendingSaves) {
+			pendingSaves.remove(this);
+		}
+
+		this.config = config;
+		invalidateCache();
+	}
+
+	/**
+	 * Removes the config file from the disk, discarding pending saves
 	 */
 	protected void delete() {
 		YamlConfig.unregisterLoadedFile(file);
 
+		synchronized (pendingSaves) {
+			pendingSaves.remove(this);
+		}
+
+		awaitWrites();
 		file.delete();
 	}
 
+	/**
+	 * Writes the pending save of a previously loaded instance of the given file
+	 * and waits until it is written, so that loading the file again sees it
+	 *
+	 * @param fileName
+	 */
+	static void flushPending(String fileName) {
+		final List<ConfigInstance> instances = new ArrayList<>();
+
+		synchronized (pendingSaves) {
+			for (final ConfigInstance instance : pendingSaves)
+				if (instance.equals(fileName))
+					instances.add(instance);
+		}
+
+		for (final ConfigInstance instance : instances)
+			instance.flush(false);
+
+		if (!instances.isEmpty())
+			awaitWrites();
+	}
+
+	/**
+	 * Writes all pending saves and waits until they are written
+	 */
+	static void flushAll() {
+		final List<ConfigInstance> instances;
+
+		synchronized (pendingSaves) {
+			instances = new ArrayList<>(pendingSaves);
+		}
+
+		for (final ConfigInstance instance : instances)
+			instance.flush(false);
+
+		awaitWrites();
+	}
+
+	/*
+	 * Wait until all files submitted so far are written
+	 */
+	private static void awaitWrites() {
+		await(writer.submit(() -> {
+		}));
+	}
+
+	/*
+	 * Wait for the write to finish
+	 */
+	private static void await(Future<?> write) {
+		try {
+			write.get();
+
+		} catch (final InterruptedException ex) {
+			Thread.currentThread().interrupt();
+
+		} catch (final ExecutionException ex) {
+			Common.error(ex.getCause(), "Failed to save a configuration file");
+		}
+	}
+
 	/**
 	 * Returns true if the given file name equals to the one we store here
 	 *
@@ -1686,4 +2176,60 @@ class ConfigInstance {
 	public boolean equals(Object obj) {
 		return obj instanceof ConfigInstance ? ((ConfigInstance) obj).file.getName().equals(this.file.getName()) : obj instanceof File ? ((File) obj).getName().equals(this.file.getName()) : obj instanceof String ? ((String) obj).equals(this.file.getName()) : false;
 	}
-}
\ No newline at end of file
+}
+
+/**
+ * Caches values of a config by their path and type, so that repeated
+ * calls to getters do not need to look them up and convert them again
+ */
+final class ValueCache {
+
+	/**
+	 * Stored instead of null since the maps do not allow null values
+	 */
+	private static final Object NULL = new Object();
+
+	/**
+	 * Values by type and then by path, so that the same path read as different
+	 * types is cached separately and each value is an instance of its type
+	 */
+	private final Map<Class<?>, Map<String, Object>> values = new ConcurrentHashMap<>();
+
+	/**
+	 * Increased on each clear so that values loaded while clearing are not stored
+	 */
+	private final AtomicInteger generation = new AtomicInteger();
+
+	/**
+	 * Return the cached value, or load and cache it
+	 *
+	 * @param <T>
+	 * @param path
+	 * @param type
+	 * @param loader
+	 * @return
+	 */
+	<T> T get(String path, Class<T> type, Supplier<T> loader) {
+		final Map<String, Object> valuesOfType = values.computeIfAbsent(type, key -> new ConcurrentHashMap<>());
+		final Object cached = valuesOfType.get(path);
+
+		if (cached != null)
+			return cached == NULL ? null : type.cast(cached);
+
+		final int generationBefore = generation.get();
+		final T value = loader.get();
+
+		if (generation.get() == generationBefore)
+			valuesOfType.put(path, value == null ? NULL : value);
+
+		return value;
+	}
+
+	/**
+	 * Forget all values
+	 */
+	void clear() {
+		generation.incrementAndGet();
+		values.clear();
+	}
+}
@@ -4,8 +4,10 @@ import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.bukkit.Material;
 import org.bukkit.configuration.file.YamlConfiguration;
@@ -55,6 +57,11 @@ public abstract class YamlStaticConfig {
 			protected void onLoadFinish() {
 				YamlStaticConfig.this.loadViaReflection();
 			}
+
+			@Override
+			boolean isReloadableAlone() {
+				return false;
+			}
 		};
 
 		TEMPORARY_INSTANCE.setHeader(getHeader());
@@ -83,6 +90,70 @@ public abstract class YamlStaticConfig {
 		}
 	}
 
+	/**
+	 * Load all given static config classes, restoring the previous values
+	 * of their static fields if any of them fails to load, so that a broken
+	 * file does not leave the settings half loaded
+	 *
+	 * @param classes
+	 * @throws Exception
+	 */
+	public static final void loadOrRestore(List<Class<? extends YamlStaticConfig>> classes) throws Exception {
+		if (classes == null)
+			return;
+
+		final Map<Field, Object> previousValues = new HashMap<>();
+
+		for (final Class<? extends YamlStaticConfig> clazz : classes) {
+			if (YamlStaticConfig.class.isAssignableFrom(clazz.getSuperclass()))
+				snapshotFields(clazz.getSuperclass(), previousValues);
+
+			snapshotFields(clazz, previousValues);
+		}
+
+		try {
+			load(classes);
+
+		} catch (final Throwable t) {
+			TEMPORARY_INSTANCE = null;
+
+			for (final Map.Entry<Field, Object> entry : previousValues.entrySet())
+				entry.getKey().set(null, entry.getValue());
+
+			throw t;
+		}
+	}
+
+	/*
+	 * Store values of static fields in the class and its nested classes
+	 * the same way invokeAll() walks them
+	 */
+	private static void snapshotFields(Class<?> clazz, Map<Field, Object> values) throws IllegalAccessException {
+		snapshotFieldsIn(clazz, values);
+
+		for (final Class<?> subClazz : clazz.getDeclaredClasses()) {
+			snapshotFieldsIn(subClazz, values);
+
+			for (final Class<?> subSubClazz : subClazz.getDeclaredClasses())
+				snapshotFieldsIn(subSubClazz, values);
+		}
+	}
+
+	/*
+	 * Store values of static non-final fields in the class
+	 */
+	private static void snapshotFieldsIn(Class<?> clazz, Map<Field, Object> values) throws IllegalAccessException {
+		for (final Field field : clazz.getDeclaredFields()) {
+			final int mod = field.getModifiers();
+
+			if (Modifier.isStatic(mod) && !Modifier.isFinal(mod)) {
+				field.setAccessible(true);
+
+				values.put(field, field.get(null));
+			}
+		}
+	}
+
 	/**
 	 * Return the default header used when the file is being written to and saved.
 	 * YAML files do not remember # comments. All of them will be lost and the file
@@ -276,6 +347,10 @@ public abstract class YamlStaticConfig {
 		return TEMPORARY_INSTANCE.getConfig();
 	}
 
+	protected static final void invalidateCache() {
+		TEMPORARY_INSTANCE.invalidateCache();
+	}
+
 	protected static final YamlConfiguration getDefaults() {
 		return TEMPORARY_INSTANCE.getDefaults();
 	}
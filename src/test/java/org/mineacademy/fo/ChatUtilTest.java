@@ -0,0 +1,112 @@
+package org.mineacademy.fo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests measuring and wrapping text in {@link ChatUtil}
+ */
+public class ChatUtilTest {
+
+	private static final String TEXT = "The quick brown fox jumps over the lazy dog while the server keeps running smoothly for everyone online";
+
+	@Test
+	public void testWidthIgnoresColors() {
+		assertEquals(ChatUtil.getWidth("Hello"), ChatUtil.getWidth("&cHe&allo"));
+		assertTrue(ChatUtil.getWidth("&lHello") > ChatUtil.getWidth("Hello"));
+		assertEquals(ChatUtil.getWidth("Hello"), ChatUtil.getWidth("&lHe&rllo") - 2);
+	}
+
+	@Test
+	public void testLinesFitTheWidth() {
+		for (final int width : new int[] { 40, 60, 100, 154, 320 })
+			for (final String line : ChatUtil.wrap(TEXT, width))
+				assertTrue("Line '" + line + "' is wider than " + width, ChatUtil.getWidth(line) <= width);
+	}
+
+	@Test
+	public void testWordsAreKept() {
+
+		// Wide enough for the longest word so that no word is broken
+		for (final int width : new int[] { 60, 100, 154, 320 })
+			assertEquals(words(TEXT), words(String.join(" ", ChatUtil.wrap(TEXT, width))));
+	}
+
+	@Test
+	public void testBreaksAtSpaces() {
+		final List<String> lines = ChatUtil.wrap(TEXT, 100);
+
+		assertTrue(lines.size() > 1);
+
+		for (final String line : lines) {
+			assertFalse("Line '" + line + "' starts with a space", line.startsWith(" "));
+			assertTrue("Line '" + line + "' is blank", !line.trim().isEmpty());
+		}
+	}
+
+	@Test
+	public void testShortMessageIsOneLine() {
+		assertEquals(Arrays.asList("Hello world"), ChatUtil.wrap("Hello world", 320));
+	}
+
+	@Test
+	public void testLongWordIsBroken() {
+		final String word = "Supercalifragilisticexpialidocious";
+		final List<String> lines = ChatUtil.wrap("a " + word + " b", 50);
+
+		for (final String line : lines)
+			assertTrue("Line '" + line + "' is wider than 50", ChatUtil.getWidth(line) <= 50);
+
+		assertEquals("a" + word + "b", String.join("", lines).replace(" ", ""));
+	}
+
+	@Test
+	public void testNewLinesAreKept() {
+		assertEquals(Arrays.asList("first", "second"), ChatUtil.wrap("first\nsecond", 320));
+	}
+
+	@Test
+	public void testColorsContinueOnNextLine() {
+		final List<String> lines = ChatUtil.wrap("&c" + TEXT, 100);
+
+		assertTrue(lines.size() > 1);
+
+		for (final String line : lines)
+			assertTrue("Line '" + line + "' lost its color", line.startsWith("&c"));
+	}
+
+	@Test
+	public void testBoldLinesFitTheWidth() {
+		for (final String line : ChatUtil.wrap("&l" + TEXT, 100))
+			assertTrue("Line '" + line + "' is wider than 100", ChatUtil.getWidth(line) <= 100);
+	}
+
+	@Test
+	public void testTruncate() {
+		final String truncated = ChatUtil.truncate(TEXT, 60);
+
+		assertTrue(TEXT.startsWith(truncated));
+		assertTrue(ChatUtil.getWidth(truncated) <= 60);
+		assertTrue(ChatUtil.getWidth(TEXT.substring(0, truncated.length() + 1)) > 60);
+	}
+
+	/*
+	 * Return the words of the text without colors
+	 */
+	private static List<String> words(String text) {
+		final List<String> words = new ArrayList<>();
+
+		for (final String word : text.replaceAll("&[0-9a-fk-or]", "").split(" +"))
+			if (!word.isEmpty())
+				words.add(word);
+
+		return words;
+	}
+}
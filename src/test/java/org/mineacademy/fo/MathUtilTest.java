@@ -0,0 +1,98 @@
+package org.mineacademy.fo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.mineacademy.fo.MathUtil.CalculatorException;
+import org.mineacademy.fo.MathUtil.Expression;
+
+/**
+ * Tests parsing and evaluating expressions in {@link MathUtil}
+ */
+public class MathUtilTest {
+
+	private static final double DELTA = 1e-9;
+
+	@Test
+	public void testOperatorPrecedence() {
+		assertEquals(14, MathUtil.calculate("2 + 3 * 4"), DELTA);
+		assertEquals(20, MathUtil.calculate("(2 + 3) * 4"), DELTA);
+		assertEquals(2.5, MathUtil.calculate("10 / 4"), DELTA);
+		assertEquals(1, MathUtil.calculate("10 - 4 - 5"), DELTA);
+		assertEquals(512, MathUtil.calculate("2 ^ 3 ^ 2"), DELTA);
+	}
+
+	@Test
+	public void testUnaryMinus() {
+		assertEquals(-9, MathUtil.calculate("-3^2"), DELTA);
+		assertEquals(9, MathUtil.calculate("(-3)^2"), DELTA);
+		assertEquals(1, MathUtil.calculate("4 + -3"), DELTA);
+		assertEquals(3, MathUtil.calculate("+3"), DELTA);
+	}
+
+	@Test
+	public void testImplicitMultiplication() {
+		assertEquals(8, MathUtil.calculate("2(3 + 1)"), DELTA);
+		assertEquals(12, MathUtil.calculate("(1 + 2)(2 + 2)"), DELTA);
+	}
+
+	@Test
+	public void testDecimals() {
+		assertEquals(0.75, MathUtil.calculate("0.5 + .25"), DELTA);
+	}
+
+	@Test
+	public void testConstantDivisionByZero() {
+		assertTrue(Double.isInfinite(MathUtil.calculate("1 / 0")));
+	}
+
+	@Test
+	public void testVariables() {
+		final Expression expression = MathUtil.compile("base * 1.5 ^ level + base");
+
+		assertEquals(Arrays.asList("base", "level"), expression.getVariables());
+		assertEquals(0, expression.indexOf("base"));
+		assertEquals(1, expression.indexOf("level"));
+		assertEquals(-1, expression.indexOf("missing"));
+
+		assertEquals(10 * 2.25 + 10, expression.evaluate(10, 2), DELTA);
+		assertEquals(4 * 1.5 + 4, expression.evaluate(4, 1), DELTA);
+	}
+
+	@Test
+	public void testConstantPartsNextToVariables() {
+		final Expression expression = MathUtil.compile("2 * 3 + x * (4 - 1) - -x");
+
+		assertEquals(6 + 3 * 5 + 5, expression.evaluate(5), DELTA);
+		assertEquals(6, expression.evaluate(0), DELTA);
+	}
+
+	@Test
+	public void testCompiledExpressionsAreCached() {
+		assertSame(MathUtil.compile("1 + x"), MathUtil.compile("1 + x"));
+	}
+
+	@Test(expected = CalculatorException.class)
+	public void testMissingValue() {
+		MathUtil.compile("x + y").evaluate(1);
+	}
+
+	@Test(expected = CalculatorException.class)
+	public void testVariablesWithoutValues() {
+		MathUtil.calculate("x + 1");
+	}
+
+	@Test(expected = CalculatorException.class)
+	public void testTrailingGarbage() {
+		MathUtil.calculate("1 + 2)");
+	}
+
+	@Test(expected = CalculatorException.class)
+	public void testMissingOperand() {
+		MathUtil.calculate("1 + ");
+	}
+}
@@ -0,0 +1,113 @@
+package org.mineacademy.fo.collection;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests encoding values to the binary form of {@link SerializedMap} and back
+ */
+public class SerializedMapCodecTest {
+
+	@Test
+	public void testRoundTripAllTypes() {
+		final Map<String, Object> map = new LinkedHashMap<>();
+
+		map.put("string", "Hello ěščř 世界");
+		map.put("empty", "");
+		map.put("int", 42);
+		map.put("negativeInt", -7);
+		map.put("maxInt", Integer.MAX_VALUE);
+		map.put("minInt", Integer.MIN_VALUE);
+		map.put("long", 1234567890123L);
+		map.put("double", 3.5D);
+		map.put("float", 1.25F);
+		map.put("short", (short) -300);
+		map.put("byte", (byte) 12);
+		map.put("true", true);
+		map.put("false", false);
+		map.put("null", null);
+		map.put("list", Arrays.asList("a", 1, null, Arrays.asList(2L, 3D)));
+
+		final Map<String, Object> nested = new LinkedHashMap<>();
+		nested.put("key", "value");
+		map.put("map", nested);
+
+		assertEquals(map, roundTrip(map, -1));
+	}
+
+	@Test
+	public void testKeepsOrderOfKeys() {
+		final Map<String, Object> map = new LinkedHashMap<>();
+
+		for (int i = 20; i > 0; i--)
+			map.put("key" + i, i);
+
+		final Map<?, ?> decoded = (Map<?, ?>) roundTrip(map, -1);
+
+		assertEquals(Arrays.asList(map.keySet().toArray()), Arrays.asList(decoded.keySet().toArray()));
+	}
+
+	@Test
+	public void testArraysAreDecodedAsLists() {
+		assertEquals(Arrays.asList("a", "b"), roundTrip(new Object[] { "a", "b" }, -1));
+	}
+
+	@Test
+	public void testCompressesLargePayloads() {
+		final Map<String, Object> map = new LinkedHashMap<>();
+
+		for (int i = 0; i < 200; i++)
+			map.put("key" + i, "the same long value repeated over and over");
+
+		final byte[] plain = SerializedMapCodec.encode(map, -1);
+		final byte[] compressed = SerializedMapCodec.encode(map, 64);
+
+		assertEquals(SerializedMapCodec.FORMAT_PLAIN, plain[0]);
+		assertEquals(SerializedMapCodec.FORMAT_DEFLATED, compressed[0]);
+		assertTrue(compressed.length < plain.length);
+
+		assertEquals(map, SerializedMapCodec.decode(compressed));
+	}
+
+	@Test
+	public void testSmallPayloadsAreNotCompressed() {
+		final List<Object> list = Arrays.asList("short");
+
+		assertEquals(SerializedMapCodec.FORMAT_PLAIN, SerializedMapCodec.encode(list, 1024)[0]);
+	}
+
+	@Test
+	public void testTellsJsonApart() {
+		assertFalse(SerializedMapCodec.isEncoded("{\"key\":1}".getBytes(StandardCharsets.UTF_8)));
+		assertFalse(SerializedMapCodec.isEncoded(new byte[0]));
+		assertFalse(SerializedMapCodec.isEncoded(null));
+
+		assertTrue(SerializedMapCodec.isEncoded(SerializedMapCodec.encode("value", -1)));
+	}
+
+	@Test
+	public void testEncodingIsStable() {
+		final Map<String, Object> map = new LinkedHashMap<>();
+		map.put("a", 1);
+		map.put("b", "two");
+
+		assertArrayEquals(SerializedMapCodec.encode(map, -1), SerializedMapCodec.encode(roundTrip(map, -1), -1));
+	}
+
+	/*
+	 * Encode and decode the value
+	 */
+	private static Object roundTrip(Object value, int compressionThreshold) {
+		return SerializedMapCodec.decode(SerializedMapCodec.encode(value, compressionThreshold));
+	}
+}
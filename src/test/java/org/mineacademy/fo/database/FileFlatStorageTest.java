@@ -0,0 +1,208 @@
+package org.mineacademy.fo.database;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mineacademy.fo.database.FlatStorage.Row;
+
+/**
+ * Tests storing rows in a file, and recovering from a file damaged by a crash
+ */
+public class FileFlatStorageTest {
+
+	private static final UUID FIRST = new UUID(1, 1), SECOND = new UUID(2, 2);
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private File file;
+
+	private FileFlatStorage storage;
+
+	@Before
+	public void setUp() throws IOException {
+		file = new File(folder.getRoot(), "data.db");
+		storage = open();
+	}
+
+	@After
+	public void tearDown() {
+		storage.close();
+	}
+
+	@Test
+	public void testRowsSurviveReopening() throws IOException {
+		storage.write(Arrays.asList(row(FIRST, "first"), row(SECOND, "second")));
+
+		reopen();
+
+		assertData(FIRST, "first");
+		assertData(SECOND, "second");
+	}
+
+	@Test
+	public void testLatestSaveWins() throws IOException {
+		storage.write(Collections.singletonList(row(FIRST, "old")));
+		storage.write(Collections.singletonList(row(FIRST, "new")));
+
+		reopen();
+
+		assertData(FIRST, "new");
+	}
+
+	@Test
+	public void testRemovedRowsStayRemoved() throws IOException {
+		storage.write(Arrays.asList(row(FIRST, "first"), row(SECOND, "second")));
+		storage.write(Collections.singletonList(new Row(FIRST, "first", null, System.currentTimeMillis())));
+
+		reopen();
+
+		assertFalse(storage.fetch(Collections.singletonList(FIRST)).containsKey(FIRST));
+		assertData(SECOND, "second");
+	}
+
+	@Test
+	public void testIncompleteLastRecordIsTruncated() throws IOException {
+		storage.write(Collections.singletonList(row(FIRST, "first")));
+		storage.close();
+
+		final long validLength = file.length();
+
+		storage = open();
+		storage.write(Collections.singletonList(row(SECOND, "second")));
+		storage.close();
+
+		// Cut the second record in half as if the server crashed while writing it
+		setLength(validLength + (file.length() - validLength) / 2);
+
+		storage = open();
+
+		assertEquals(validLength, file.length());
+		assertData(FIRST, "first");
+		assertFalse(storage.fetch(Collections.singletonList(SECOND)).containsKey(SECOND));
+
+		// Records appended after the recovery must be readable
+		storage.write(Collections.singletonList(row(SECOND, "again")));
+		reopen();
+
+		assertData(FIRST, "first");
+		assertData(SECOND, "again");
+	}
+
+	@Test
+	public void testCorruptLengthIsTreatedAsEnd() throws IOException {
+		storage.write(Collections.singletonList(row(FIRST, "first")));
+		storage.close();
+
+		final long validLength = file.length();
+
+		// Append a record claiming a name far longer than the file
+		try (DataOutputStream output = new DataOutputStream(new FileOutputStream(file, true))) {
+			output.writeByte(1);
+			output.writeLong(SECOND.getMostSignificantBits());
+			output.writeLong(SECOND.getLeastSignificantBits());
+			output.writeInt(Integer.MAX_VALUE);
+			output.writeInt(0);
+		}
+
+		storage = open();
+
+		assertEquals(validLength, file.length());
+		assertData(FIRST, "first");
+		assertFalse(storage.fetch(Collections.singletonList(SECOND)).containsKey(SECOND));
+	}
+
+	@Test
+	public void testNegativeLengthIsTreatedAsEnd() throws IOException {
+		storage.write(Collections.singletonList(row(FIRST, "first")));
+		storage.close();
+
+		final long validLength = file.length();
+
+		try (DataOutputStream output = new DataOutputStream(new FileOutputStream(file, true))) {
+			output.writeByte(1);
+			output.writeLong(SECOND.getMostSignificantBits());
+			output.writeLong(SECOND.getLeastSignificantBits());
+			output.writeInt(-5);
+		}
+
+		storage = open();
+
+		assertEquals(validLength, file.length());
+		assertData(FIRST, "first");
+	}
+
+	@Test
+	public void testOldRowsArePurged() throws IOException {
+		storage.write(Arrays.asList(new Row(FIRST, "first", bytes("first"), 1000), row(SECOND, "second")));
+		storage.removeOlderThan(2000);
+
+		reopen();
+
+		assertFalse(storage.fetch(Collections.singletonList(FIRST)).containsKey(FIRST));
+		assertData(SECOND, "second");
+		assertTrue(file.length() > 8);
+	}
+
+	/*
+	 * Close the storage and open it again, reading the file
+	 */
+	private void reopen() throws IOException {
+		storage.close();
+		storage = open();
+	}
+
+	/*
+	 * Open a new storage on the file
+	 */
+	private FileFlatStorage open() throws IOException {
+		final FileFlatStorage storage = new FileFlatStorage(file);
+		storage.open();
+
+		return storage;
+	}
+
+	/*
+	 * Change the length of the file
+	 */
+	private void setLength(long length) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(length);
+		}
+	}
+
+	/*
+	 * Assert the stored data of the player
+	 */
+	private void assertData(UUID uuid, String expected) {
+		final Map<UUID, byte[]> fetched = storage.fetch(Collections.singletonList(uuid));
+
+		assertArrayEquals(bytes(expected), fetched.get(uuid));
+	}
+
+	private static Row row(UUID uuid, String data) {
+		return new Row(uuid, "Player" + uuid.getMostSignificantBits(), bytes(data), System.currentTimeMillis());
+	}
+
+	private static byte[] bytes(String data) {
+		return data.getBytes(StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,84 @@
+package org.mineacademy.fo.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.mineacademy.fo.Valid;
+
+/**
+ * Tests that {@link ListMatcher} matches the same as the linear checks in {@link Valid}
+ *
+ * Regex matching depends on the plugin's settings and is not covered here.
+ */
+public class ListMatcherTest {
+
+	/**
+	 * Entries without regex characters, others are compiled using the plugin's settings
+	 */
+	private static final List<String> LIST = Arrays.asList("/spawn", "Home", "warp set", "tp", "Ban-IP");
+
+	private static final List<String> MESSAGES = Arrays.asList(
+			"spawn", "/spawn", "/SPAWN", "spawn now", "spaw",
+			"home", "/home", "homes", "hom",
+			"warp set", "warp setting", "warp",
+			"tp", "tpa", "/tp player", "t",
+			"ban-ip", "/BAN-IP Notch", "ärger",
+			"", "/", "unrelated");
+
+	@Test
+	public void testContainsMatchesValid() {
+		final ListMatcher matcher = new ListMatcher(LIST);
+
+		for (final String message : MESSAGES)
+			assertEquals("contains '" + message + "'", Valid.isInList(message, LIST), matcher.contains(message));
+	}
+
+	@Test
+	public void testStartsWithMatchesValid() {
+		final ListMatcher matcher = new ListMatcher(LIST);
+
+		for (final String message : MESSAGES)
+			assertEquals("startsWith '" + message + "'", Valid.isInListStartsWith(message, LIST), matcher.startsWith(message));
+	}
+
+	@Test
+	public void testStartsWithOtherList() {
+		final List<String> list = Arrays.asList("/msg", "tell", "w");
+		final ListMatcher matcher = new ListMatcher(list);
+
+		for (final String message : Arrays.asList("msg Notch hi", "/tell a", "whisper", "", "ms", "/", "x"))
+			assertEquals("startsWith '" + message + "'", Valid.isInListStartsWith(message, list), matcher.startsWith(message));
+	}
+
+	@Test
+	public void testLargeList() {
+		final List<String> list = new ArrayList<>();
+
+		for (int i = 0; i < 5000; i++)
+			list.add("word" + i);
+
+		final ListMatcher matcher = new ListMatcher(list);
+
+		assertTrue(matcher.contains("WORD4999"));
+		assertTrue(matcher.startsWith("word12 and more"));
+		assertFalse(matcher.contains("word5000"));
+		assertFalse(matcher.startsWith("wor"));
+	}
+
+	@Test
+	public void testCopiesTheList() {
+		final List<String> list = new ArrayList<>(Arrays.asList("first"));
+		final ListMatcher matcher = new ListMatcher(list);
+
+		list.add("second");
+
+		assertTrue(matcher.contains("first"));
+		assertFalse(matcher.contains("second"));
+	}
+}